@@ -2,10 +2,11 @@ package net.seesharpsoft.commons.util;
 
 import net.seesharpsoft.UnhandledSwitchCaseException;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class Lexer<T> {
@@ -15,11 +16,15 @@ public class Lexer<T> {
      * @param <T> the token type
      */
     public static class State<T> {
+        private final Lexer<T> lexer;
         private final String name;
+        private final int ordinal;
         private Map<State, Set<T>> nextStates;
 
-        private State(String name) {
+        private State(Lexer<T> lexer, String name, int ordinal) {
+            this.lexer = lexer;
             this.name = name;
+            this.ordinal = ordinal;
             nextStates = new HashMap<>();
         }
 
@@ -38,6 +43,7 @@ public class Lexer<T> {
             } else {
                 nextStates.put(state, new HashSet<>(tokens));
             }
+            lexer.transitionTable = null;
         }
 
         public void addNextState(State state, T... tokens) {
@@ -45,18 +51,20 @@ public class Lexer<T> {
         }
 
         protected State getNextState(T token) {
-            for (Map.Entry<State, Set<T>> entry : nextStates.entrySet()) {
-                if (entry.getValue().contains(token)) {
-                    return entry.getKey();
-                }
-            }
-            return null;
+            return lexer.getTransitionTable().getNextState(this, token);
         }
 
         public String getName() {
             return name;
         }
 
+        /**
+         * @return the position of this state within its lexer
+         */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
         @Override
         public String toString() {
             return getName();
@@ -76,6 +84,105 @@ public class Lexer<T> {
         }
     }
 
+    /**
+     * Immutable transition table of all states of a lexer, indexed by state ordinal and token index.
+     * Enum tokens use their ordinal as token index, any other tokens are indexed via a map.
+     * @param <T> the token type
+     */
+    public static class TransitionTable<T> {
+        private final Class<? extends Enum> enumType;
+        private final Map<T, Integer> tokenIndices;
+        private final State<T>[][] table;
+
+        private TransitionTable(Class<? extends Enum> enumType, Map<T, Integer> tokenIndices, State<T>[][] table) {
+            this.enumType = enumType;
+            this.tokenIndices = tokenIndices;
+            this.table = table;
+        }
+
+        private static Class<? extends Enum> getEnumType(Collection<?> tokens) {
+            Class<? extends Enum> enumType = null;
+            for (Object token : tokens) {
+                if (!(token instanceof Enum)) {
+                    return null;
+                }
+                Class<? extends Enum> tokenType = ((Enum)token).getDeclaringClass();
+                if (enumType != null && enumType != tokenType) {
+                    return null;
+                }
+                enumType = tokenType;
+            }
+            return enumType;
+        }
+
+        /**
+         * Creates the transition table for the given states.
+         * @param states all states of a lexer, ordered by their ordinal
+         * @param <T> the token type
+         * @return the transition table
+         * @throws IllegalStateException if the transitions are ambiguous or a transition targets a state not part of the given states
+         */
+        public static <T> TransitionTable<T> build(List<State<T>> states) {
+            Set<T> tokens = new LinkedHashSet<>();
+            for (int i = 0; i < states.size(); ++i) {
+                State<T> state = states.get(i);
+                if (state.ordinal != i) {
+                    throw new IllegalStateException(String.format("state '%s' has ordinal %s but is at position %s", state, state.ordinal, i));
+                }
+                for (Map.Entry<State, Set<T>> entry : state.nextStates.entrySet()) {
+                    State<T> nextState = entry.getKey();
+                    if (nextState.ordinal >= states.size() || states.get(nextState.ordinal) != nextState) {
+                        throw new IllegalStateException(String.format("state '%s' has a transition to unknown state '%s'", state, nextState));
+                    }
+                    tokens.addAll(entry.getValue());
+                }
+            }
+
+            Class<? extends Enum> enumType = getEnumType(tokens);
+            Map<T, Integer> tokenIndices = null;
+            int width;
+            if (enumType != null) {
+                width = enumType.getEnumConstants().length;
+            } else {
+                tokenIndices = new HashMap<>();
+                for (T token : tokens) {
+                    tokenIndices.put(token, tokenIndices.size());
+                }
+                width = tokenIndices.size();
+            }
+
+            State<T>[][] table = new State[states.size()][width];
+            for (State<T> state : states) {
+                for (Map.Entry<State, Set<T>> entry : state.nextStates.entrySet()) {
+                    for (T token : entry.getValue()) {
+                        int index = enumType != null ? ((Enum)token).ordinal() : tokenIndices.get(token);
+                        if (table[state.ordinal][index] != null && table[state.ordinal][index] != entry.getKey()) {
+                            throw new IllegalStateException(String.format("ambiguous transition of state '%s' for token '%s': '%s' or '%s'", state, token, table[state.ordinal][index], entry.getKey()));
+                        }
+                        table[state.ordinal][index] = entry.getKey();
+                    }
+                }
+            }
+            return new TransitionTable<>(enumType, tokenIndices, table);
+        }
+
+        protected int getTokenIndex(T token) {
+            if (enumType != null) {
+                return token instanceof Enum && ((Enum)token).getDeclaringClass() == enumType ? ((Enum)token).ordinal() : -1;
+            }
+            Integer index = tokenIndices.get(token);
+            return index == null ? -1 : index;
+        }
+
+        public State<T> getNextState(State<T> state, T token) {
+            int index = getTokenIndex(token);
+            if (index == -1 || state.ordinal >= table.length) {
+                return null;
+            }
+            return table[state.ordinal][index];
+        }
+    }
+
     public static class StateInfo<T> {
         private final State<T> state;
         private List<Tokenizer.TokenInfo<T>> tokenInfos;
@@ -118,13 +225,47 @@ public class Lexer<T> {
         }
     }
 
+    /**
+     * Keeps track of the current state while tokenizing a single input, so a lexer can be used by multiple threads at the same time.
+     * @param <T> the token type
+     */
+    protected static class Cursor<T> implements Tokenizer.MatchCallback<T>, BiFunction<T, String, Boolean> {
+        private final TransitionTable<T> transitionTable;
+        private State<T> currentState;
+
+        protected Cursor(TransitionTable<T> transitionTable, State<T> initialState) {
+            this.transitionTable = transitionTable;
+            this.currentState = initialState;
+        }
+
+        public State<T> getCurrentState() {
+            return currentState;
+        }
+
+        @Override
+        public boolean apply(T token, CharSequence input, int start, int end) {
+            State<T> nextState = transitionTable.getNextState(currentState, token);
+            if (nextState != null) {
+                currentState = nextState;
+            }
+            return nextState != null;
+        }
+
+        @Override
+        public Boolean apply(T token, String sequence) {
+            return apply(token, sequence, 0, sequence.length());
+        }
+    }
+
     private final Tokenizer<T> tokenizer;
-    private Set<State> states;
+    private final List<State<T>> states;
+    private final Map<String, State<T>> stateMap;
     private State initialState;
-    private State currentState;
+    private volatile TransitionTable<T> transitionTable;
 
     public Lexer(Tokenizer<T> tokenizer) {
-        this.states = new HashSet<>();
+        this.states = new ArrayList<>();
+        this.stateMap = new HashMap<>();
         this.tokenizer = tokenizer;
     }
 
@@ -138,8 +279,13 @@ public class Lexer<T> {
 
     public State addState(String name) {
         Objects.requireNonNull(name, "state name must not be null!");
-        State state = new State(name);
+        if (stateMap.containsKey(name)) {
+            throw new IllegalArgumentException(String.format("state '%s' is already defined in this Lexer instance", name));
+        }
+        State state = new State(this, name, states.size());
         states.add(state);
+        stateMap.put(name, state);
+        transitionTable = null;
         if (getInitialState() == null) {
             setInitialState(state);
         }
@@ -148,12 +294,12 @@ public class Lexer<T> {
 
     public State getState(String name) {
         Objects.requireNonNull(name, "state name must not be null!");
-        return states.stream().filter(state -> state.name.equals(name)).findFirst().orElse(null);
+        return stateMap.get(name);
     }
 
     public void setInitialState(State state) {
         Objects.requireNonNull(state, "state must not be null!");
-        if (!states.contains(state)) {
+        if (!state.equals(stateMap.get(state.getName()))) {
             throw new IllegalArgumentException(String.format("state '%s' is not defined in this Lexer instance", state.toString()));
         }
         initialState = state;
@@ -163,18 +309,59 @@ public class Lexer<T> {
         return initialState;
     }
 
-    protected boolean tokenMatcherCallback(T token, String sequence) {
-        State nextState = currentState.getNextState(token);
-        if (nextState != null) {
-            currentState = nextState;
+    /**
+     * Freezes the current state graph into a transition table. Called implicitly on first use after states or transitions were added.
+     * @return the transition table
+     * @throws IllegalStateException if the state graph is ambiguous
+     */
+    public TransitionTable<T> getTransitionTable() {
+        TransitionTable<T> currentTransitionTable = transitionTable;
+        if (currentTransitionTable == null) {
+            currentTransitionTable = TransitionTable.build(states);
+            transitionTable = currentTransitionTable;
         }
-        return nextState != null;
+        return currentTransitionTable;
     }
 
-    public synchronized List<Tokenizer.TokenInfo<T>> tokenize(String input) throws ParseException {
-        currentState = getInitialState();
+    protected Cursor<T> createCursor() {
+        return new Cursor<>(getTransitionTable(), getInitialState());
+    }
 
-        return tokenizer.tokenize(input, this::tokenMatcherCallback);
+    public List<Tokenizer.TokenInfo<T>> tokenize(String input) throws ParseException {
+        return tokenizer.tokenize(input, (BiFunction<T, String, Boolean>)createCursor());
+    }
+
+    /**
+     * Same as {@link #tokenize(String)}, but the tokens are returned as offsets into the input.
+     * @param input the input to tokenize
+     * @return the tokens of the input
+     * @throws ParseException if the input contains an unexpected token
+     */
+    public Tokenizer.TokenStream<T> tokenizeStream(CharSequence input) throws ParseException {
+        return tokenizer.tokenizeStream(input, createCursor());
+    }
+
+    /**
+     * Same as {@link #tokenizeStream(CharSequence)}, but each token accepted by the current state is passed to the given callback
+     * while tokenizing. The callback is expected to accept the token as well, since the state has already moved on at that point.
+     * @param input the input to tokenize
+     * @param matchCallback callback invoked for each token accepted by the current state
+     * @return the tokens of the input
+     * @throws ParseException if the input contains an unexpected token
+     */
+    public Tokenizer.TokenStream<T> tokenizeStream(CharSequence input, Tokenizer.MatchCallback<T> matchCallback) throws ParseException {
+        Objects.requireNonNull(matchCallback, "matchCallback must not be null!");
+        Cursor<T> cursor = createCursor();
+        return tokenizer.tokenizeStream(input, (token, sequence, start, end) -> cursor.apply(token, sequence, start, end) && matchCallback.apply(token, sequence, start, end));
+    }
+
+    /**
+     * Tokenizes the input of the reader on demand, see {@link Tokenizer#iterator(Reader, BiFunction)}.
+     * @param reader the reader providing the input
+     * @return iterator over the tokens of the input
+     */
+    public Iterator<Tokenizer.TokenInfo<T>> tokenize(Reader reader) {
+        return tokenizer.iterator(reader, createCursor());
     }
 
     public List<StateInfo<T>> parseStates(List<Tokenizer.TokenInfo<T>> tokenInfos) {
@@ -202,10 +389,6 @@ public class Lexer<T> {
     public void init(InputStream is, Function<String, T> tokenResolver) throws IOException {
         Objects.requireNonNull(tokenResolver, "tokenResolver must be not null!");
 
-        String lexerStates = null;
-
-        lexerStates = SharpIO.readAsString(is);
-
         Tokenizer<Integer> stateTokenizer = new Tokenizer();
         stateTokenizer.add(0, "[a-z\\_]+:");
         stateTokenizer.add(1, "[0-9A-Z\\_]+");
@@ -214,18 +397,23 @@ public class Lexer<T> {
         stateTokenizer.add(4, "\\n");
         stateTokenizer.add(5, "=.+?(\\n|$)");
 
-        List<Tokenizer.TokenInfo<Integer>> tokenInfos = null;
+        Iterator<Tokenizer.TokenInfo<Integer>> tokenInfos = stateTokenizer.iterator(new InputStreamReader(is, Charset.defaultCharset()));
         try {
-            tokenInfos = stateTokenizer.tokenize(lexerStates);
-        } catch (ParseException e) {
-            throw new IOException(e);
+            init(tokenInfos, tokenResolver);
+        } catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        } catch (Tokenizer.TokenizeException exc) {
+            throw new IOException(exc.getCause());
         }
+    }
 
+    private void init(Iterator<Tokenizer.TokenInfo<Integer>> tokenInfos, Function<String, T> tokenResolver) {
         Lexer.State lastState = null;
         String name = null;
         List<T> currentTokens = null;
         T currentToken = null;
-        for (Tokenizer.TokenInfo<Integer> tokenInfo : tokenInfos) {
+        while (tokenInfos.hasNext()) {
+            Tokenizer.TokenInfo<Integer> tokenInfo = tokenInfos.next();
             switch (tokenInfo.token) {
                 case 0:
                     name = tokenInfo.sequence.substring(0, tokenInfo.sequence.length() - 1);
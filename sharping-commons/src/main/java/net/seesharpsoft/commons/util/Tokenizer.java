@@ -1,10 +1,20 @@
 package net.seesharpsoft.commons.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Tokenizer<T>
 {
@@ -43,6 +53,20 @@ public class Tokenizer<T>
         }
     }
 
+    /**
+     * Unchecked wrapper of a {@link ParseException} thrown by iterators over tokens, see {@link #iterator(Reader, BiFunction)}.
+     */
+    public static class TokenizeException extends RuntimeException {
+        public TokenizeException(ParseException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized ParseException getCause() {
+            return (ParseException) super.getCause();
+        }
+    }
+
     public static class TokenInfo<T>
     {
         public final T token;
@@ -74,16 +98,265 @@ public class Tokenizer<T>
         }
     }
 
+    /**
+     * Callback deciding whether a matched token is accepted, given by its range in the input instead of a copy of its sequence.
+     * @param <T> the token type
+     */
+    @FunctionalInterface
+    public interface MatchCallback<T>
+    {
+        boolean apply(T token, CharSequence input, int start, int end);
+    }
+
+    /**
+     * Tokens of an input stored as type and offsets into that input. The sequence of a token is only created on request.
+     * @param <T> the token type
+     */
+    public static class TokenStream<T>
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private CharSequence input;
+        private Object[] tokens;
+        private int[] offsets;
+        private String[] sequences;
+        private int size;
+
+        protected TokenStream(CharSequence input)
+        {
+            this.input = input;
+            this.tokens = new Object[INITIAL_CAPACITY];
+            this.offsets = new int[INITIAL_CAPACITY * 2];
+            this.size = 0;
+        }
+
+        protected void add(T token, int start, int end, String sequence) {
+            if (size == tokens.length) {
+                tokens = Arrays.copyOf(tokens, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 4);
+                if (sequences != null) {
+                    sequences = Arrays.copyOf(sequences, size * 2);
+                }
+            }
+            tokens[size] = token;
+            offsets[size * 2] = start;
+            offsets[size * 2 + 1] = end;
+            if (sequence != null) {
+                if (sequences == null) {
+                    sequences = new String[tokens.length];
+                }
+                sequences[size] = sequence;
+            }
+            ++size;
+        }
+
+        /**
+         * @return the input the offsets refer to
+         */
+        public CharSequence getInput() {
+            return input;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public T getToken(int index) {
+            return (T)tokens[checkIndex(index)];
+        }
+
+        public int getStart(int index) {
+            return offsets[checkIndex(index) * 2];
+        }
+
+        public int getEnd(int index) {
+            return offsets[checkIndex(index) * 2 + 1];
+        }
+
+        public String getSequence(int index) {
+            checkIndex(index);
+            if (sequences == null) {
+                sequences = new String[tokens.length];
+            }
+            String sequence = sequences[index];
+            if (sequence == null) {
+                sequence = input.subSequence(offsets[index * 2], offsets[index * 2 + 1]).toString();
+                sequences[index] = sequence;
+            }
+            return sequence;
+        }
+
+        public TokenInfo<T> getTokenInfo(int index) {
+            return new TokenInfo<>(getToken(index), getSequence(index));
+        }
+
+        public List<TokenInfo<T>> toTokenInfos() {
+            List<TokenInfo<T>> tokenInfos = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                tokenInfos.add(getTokenInfo(i));
+            }
+            return tokenInfos;
+        }
+
+        private int checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(String.format("index: %s, size: %s", index, size));
+            }
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return toTokenInfos().toString();
+        }
+    }
+
+    /**
+     * All tokens of a tokenizer merged into a single alternation pattern, so the input is matched once per position instead of once per token.
+     * Alternatives are ordered like the tokens, therefore the first matching alternative is the token the sequential approach would find first.
+     * @param <T> the token type
+     */
+    protected static class Automaton<T>
+    {
+        public static final int HIT_END = -2;
+
+        private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+        private static final int INLINE_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL | Pattern.UNICODE_CASE | Pattern.COMMENTS | Pattern.UNIX_LINES;
+
+        private final List<Token<T>> tokens;
+        private final int[] groups;
+        private final Pattern pattern;
+
+        public Automaton(Collection<Token<T>> tokenCollection)
+        {
+            this.tokens = new ArrayList<>(tokenCollection);
+            this.groups = new int[tokens.size()];
+            this.pattern = compile();
+        }
+
+        private static String inlineFlags(int flags) {
+            return String.format("(?%s%s%s%s%s%s-%s%s%s%s%s%s:",
+                    (flags & Pattern.CASE_INSENSITIVE) != 0 ? "i" : "",
+                    (flags & Pattern.MULTILINE) != 0 ? "m" : "",
+                    (flags & Pattern.DOTALL) != 0 ? "s" : "",
+                    (flags & Pattern.UNICODE_CASE) != 0 ? "u" : "",
+                    (flags & Pattern.COMMENTS) != 0 ? "x" : "",
+                    (flags & Pattern.UNIX_LINES) != 0 ? "d" : "",
+                    (flags & Pattern.CASE_INSENSITIVE) == 0 ? "i" : "",
+                    (flags & Pattern.MULTILINE) == 0 ? "m" : "",
+                    (flags & Pattern.DOTALL) == 0 ? "s" : "",
+                    (flags & Pattern.UNICODE_CASE) == 0 ? "u" : "",
+                    (flags & Pattern.COMMENTS) == 0 ? "x" : "",
+                    (flags & Pattern.UNIX_LINES) == 0 ? "d" : "");
+        }
+
+        private Pattern compile() {
+            if (tokens.isEmpty()) {
+                return null;
+            }
+            StringBuilder builder = new StringBuilder();
+            int group = 1;
+            for (int i = 0; i < tokens.size(); ++i) {
+                Pattern regex = tokens.get(i).regex;
+                // back references would point to the wrong group and flags like LITERAL can not be inlined - match sequentially instead
+                if ((regex.flags() & ~INLINE_FLAGS) != 0 || BACK_REFERENCE.matcher(regex.pattern()).find()) {
+                    return null;
+                }
+                if (i > 0) {
+                    builder.append('|');
+                }
+                builder.append('(').append(inlineFlags(regex.flags())).append(regex.pattern()).append("))");
+                groups[i] = group;
+                group += 1 + regex.matcher("").groupCount();
+            }
+            try {
+                return Pattern.compile(builder.toString());
+            } catch (PatternSyntaxException exc) {
+                // e.g. the same named group used by different tokens
+                return null;
+            }
+        }
+
+        public List<Token<T>> getTokens() {
+            return Collections.unmodifiableList(tokens);
+        }
+
+        /**
+         * Returns the index of the first token matching at the region start of the given matcher, starting with token at index from.
+         * @param combinedMatcher matcher of the combined pattern, may be null if not compiled
+         * @param tokenMatchers lazily filled matchers of the single tokens
+         * @param from index of the first token to check
+         * @param stopOnHitEnd whether to return {@link #HIT_END} if more input could change the result
+         * @return the index of the matching token, -1 if no token matches
+         */
+        protected int match(Matcher combinedMatcher, Matcher[] tokenMatchers, CharSequence input, int start, int end, int from, boolean stopOnHitEnd) {
+            if (from == 0 && combinedMatcher != null) {
+                combinedMatcher.region(start, end);
+                boolean found = combinedMatcher.lookingAt();
+                if (stopOnHitEnd && combinedMatcher.hitEnd()) {
+                    return HIT_END;
+                }
+                if (!found) {
+                    return -1;
+                }
+                for (int i = 0; i < groups.length; ++i) {
+                    if (combinedMatcher.start(groups[i]) != -1) {
+                        tokenMatchers[i] = combinedMatcher;
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            for (int i = from; i < tokens.size(); ++i) {
+                Matcher matcher = getTokenMatcher(tokenMatchers, i, input);
+                matcher.region(start, end);
+                boolean found = matcher.lookingAt();
+                if (stopOnHitEnd && matcher.hitEnd()) {
+                    return HIT_END;
+                }
+                if (found) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        protected int match(Matcher combinedMatcher, Matcher[] tokenMatchers, CharSequence input, int start, int end, int from) {
+            return match(combinedMatcher, tokenMatchers, input, start, end, from, false);
+        }
+
+        private Matcher getTokenMatcher(Matcher[] tokenMatchers, int index, CharSequence input) {
+            Matcher matcher = tokenMatchers[index];
+            if (matcher == null || matcher.pattern() != tokens.get(index).regex) {
+                matcher = tokens.get(index).regex.matcher(input);
+                tokenMatchers[index] = matcher;
+            }
+            return matcher;
+        }
+
+        public Matcher createMatcher(CharSequence input) {
+            return pattern == null ? null : pattern.matcher(input);
+        }
+    }
+
     private Map<T, Token<T>> tokenMap;
+    private volatile Automaton<T> automaton;
     private Pattern trimPatternStart;
     private Pattern trimPatternEnd;
     private boolean caseSensitive;
+    private int streamBufferSize;
+    private int maxStreamBufferSize;
 
     public Tokenizer()
     {
         tokenMap = new HashMap<>();
         setCaseSensitive(true);
         setTrimPattern("\r| ");
+        setStreamBufferSize(4096, 1 << 20);
     }
 
     public boolean getCaseSensitive() {
@@ -97,6 +370,7 @@ public class Tokenizer<T>
 
     protected Tokenizer<T> add(Token<T> token) {
         tokenMap.put(token.token, token);
+        automaton = null;
         return this;
     }
 
@@ -116,6 +390,39 @@ public class Tokenizer<T>
         return tokenMap.get(token);
     }
 
+    /**
+     * Merges all registered tokens into a single automaton. Called implicitly on first use after tokens were added.
+     * @return this tokenizer
+     */
+    public Tokenizer<T> compile() {
+        automaton = new Automaton<>(tokenMap.values());
+        return this;
+    }
+
+    protected Automaton<T> getAutomaton() {
+        Automaton<T> current = automaton;
+        if (current == null) {
+            current = new Automaton<>(tokenMap.values());
+            automaton = current;
+        }
+        return current;
+    }
+
+    /**
+     * Sets the size of the sliding buffer used when tokenizing a {@link Reader}. The buffer only grows if a single token does not fit into it.
+     * @param initialSize the initial buffer size
+     * @param maxSize the maximum buffer size
+     * @return this tokenizer
+     */
+    public Tokenizer<T> setStreamBufferSize(int initialSize, int maxSize) {
+        if (initialSize < 2 || maxSize < initialSize) {
+            throw new IllegalArgumentException(String.format("invalid buffer size: %s - %s", initialSize, maxSize));
+        }
+        this.streamBufferSize = initialSize;
+        this.maxStreamBufferSize = maxSize;
+        return this;
+    }
+
     public Tokenizer<T> setTrimPattern(String regexTrimPattern) {
         if (regexTrimPattern == null || regexTrimPattern.isEmpty()) {
             this.trimPatternStart = null;
@@ -142,39 +449,378 @@ public class Tokenizer<T>
         return input;
     }
 
+    protected int trimStart(Matcher trimMatcher, int start, int end) {
+        if (trimMatcher == null) {
+            return start;
+        }
+        trimMatcher.region(start, end);
+        return trimMatcher.lookingAt() ? trimMatcher.end() : start;
+    }
+
+    /**
+     * Trims the end of the given range of the input, same as {@link #trim(String)} does on the corresponding substring.
+     * @return the trimmed end or -1 if the trimmed range is not continuous anymore
+     */
+    protected int trimEnd(Matcher trimMatcher, int start, int end) {
+        if (trimMatcher == null) {
+            return end;
+        }
+        trimMatcher.region(start, end);
+        if (trimMatcher.find() && trimMatcher.start() < trimMatcher.end()) {
+            // '$' may match in front of a final line terminator
+            return trimMatcher.end() == end ? trimMatcher.start() : -1;
+        }
+        return end;
+    }
+
+    /**
+     * Trims the given range of the input, same as {@link #trim(String)} does on the corresponding substring.
+     */
+    protected String trim(CharSequence input, int start, int end, Matcher trimStartMatcher, Matcher trimEndMatcher) {
+        start = trimStart(trimStartMatcher, start, end);
+        int trimmedEnd = trimEnd(trimEndMatcher, start, end);
+        if (trimmedEnd == -1) {
+            return new StringBuilder(end - start)
+                    .append(input, start, trimEndMatcher.start())
+                    .append(input, trimEndMatcher.end(), end)
+                    .toString();
+        }
+        return input.subSequence(start, trimmedEnd).toString();
+    }
+
+    /**
+     * Replaces all CRLF line breaks by LF. The input itself is returned if it does not contain any CRLF.
+     */
+    protected CharSequence normalizeLineBreaks(CharSequence input) {
+        if (input == null) {
+            return "";
+        }
+        for (int i = 1; i < input.length(); ++i) {
+            if (input.charAt(i) == '\n' && input.charAt(i - 1) == '\r') {
+                return input.toString().replace("\r\n", "\n");
+            }
+        }
+        return input;
+    }
+
     protected <T> List<TokenInfo<T>> tokenize(String str, Collection<Token<T>> tokenCollection, BiFunction<T, String, Boolean> matcherCallback) throws ParseException {
-        List<TokenInfo<T>> tokenInfos = new LinkedList<>();
-        String trimmedString = trim(str == null ? null : str.replaceAll("\r\n", "\n"));
-        while (!trimmedString.equals(""))
+        return tokenize(str, new Automaton<>(tokenCollection), null, matcherCallback).toTokenInfos();
+    }
+
+    protected <T> TokenStream<T> tokenize(CharSequence str, Automaton<T> tokenAutomaton, MatchCallback<T> matchCallback, BiFunction<T, String, Boolean> matcherCallback) throws ParseException {
+        CharSequence input = normalizeLineBreaks(str);
+        TokenStream<T> tokenStream = new TokenStream<>(input);
+        Matcher trimStartMatcher = trimPatternStart == null ? null : trimPatternStart.matcher(input);
+        Matcher trimEndMatcher = trimPatternEnd == null ? null : trimPatternEnd.matcher(input);
+        Matcher combinedMatcher = tokenAutomaton.createMatcher(input);
+        Matcher[] tokenMatchers = new Matcher[tokenAutomaton.tokens.size()];
+        boolean trimEnd = trimEndMatcher != null;
+        int start = 0;
+        int end = input.length();
+        while (true)
         {
+            start = trimStart(trimStartMatcher, start, end);
+            // the remaining input is trimmed after each token, but once trimming the end changes nothing it never will again
+            if (trimEnd) {
+                int trimmedEnd = trimEnd(trimEndMatcher, start, end);
+                if (trimmedEnd == -1) {
+                    // the remaining input is not a single range anymore - continue on a copy with the trimmed characters removed, keeping previous offsets valid
+                    input = new StringBuilder(end)
+                            .append(input, 0, trimEndMatcher.start())
+                            .append(input, trimEndMatcher.end(), end)
+                            .toString();
+                    tokenStream.input = input;
+                    trimStartMatcher = trimStartMatcher == null ? null : trimStartMatcher.reset(input);
+                    trimEndMatcher.reset(input);
+                    combinedMatcher = tokenAutomaton.createMatcher(input);
+                    Arrays.fill(tokenMatchers, null);
+                    end = input.length();
+                } else {
+                    trimEnd = trimmedEnd != end;
+                    end = trimmedEnd;
+                }
+            }
+            if (start >= end) {
+                break;
+            }
+
             boolean match = false;
-            for (Token<T> info : tokenCollection)
+            int index = tokenAutomaton.match(combinedMatcher, tokenMatchers, input, start, end, 0);
+            while (index != -1)
             {
-                Matcher matcher = info.regex.matcher(trimmedString);
-                if (matcher.find())
-                {
-                    String sequence = trim(matcher.group());
-                    if (matcherCallback == null || matcherCallback.apply(info.token, sequence)) {
-                        match = true;
-                        trimmedString = trim(matcher.replaceFirst(""));
-                        tokenInfos.add(new TokenInfo(info.token, sequence));
-                        break;
-                    }
+                Token<T> info = tokenAutomaton.tokens.get(index);
+                Matcher matcher = tokenMatchers[index];
+                int matchEnd = matcher.end();
+                int sequenceStart = trimStart(trimStartMatcher, matcher.start(), matchEnd);
+                int sequenceEnd = trimEnd(trimEndMatcher, sequenceStart, matchEnd);
+                String sequence = null;
+                if (sequenceEnd == -1 || matcherCallback != null) {
+                    sequence = trim(input, sequenceStart, matchEnd, null, trimEndMatcher);
+                    sequenceEnd = sequenceEnd == -1 ? matchEnd : sequenceEnd;
+                }
+                if ((matchCallback == null || (sequence == null ? matchCallback.apply(info.token, input, sequenceStart, sequenceEnd) : matchCallback.apply(info.token, sequence, 0, sequence.length())))
+                        && (matcherCallback == null || matcherCallback.apply(info.token, sequence))) {
+                    match = true;
+                    start = matchEnd;
+                    tokenStream.add(info.token, sequenceStart, sequenceEnd, sequence);
+                    break;
                 }
+                index = tokenAutomaton.match(null, tokenMatchers, input, start, end, index + 1);
             }
             if (!match) {
-                throw new ParseException("Unexpected character in input: " + trimmedString, 0);
+                throw new ParseException("Unexpected character in input: " + input.subSequence(start, end), 0);
             }
         }
-        return tokenInfos;
+        return tokenStream;
+    }
+
+    /**
+     * Tokenizes the input without copying the sequence of each token.
+     * @param input the input to tokenize
+     * @param matchCallback callback to decide whether a match is accepted, may be null
+     * @return the tokens as offsets into the input
+     * @throws ParseException if no token is matching at some position of the input
+     */
+    public TokenStream<T> tokenizeStream(CharSequence input, MatchCallback<T> matchCallback) throws ParseException {
+        return tokenize(input, getAutomaton(), matchCallback, null);
+    }
+
+    public TokenStream<T> tokenizeStream(CharSequence input) throws ParseException {
+        return tokenize(input, getAutomaton(), null, null);
     }
 
     public List<TokenInfo<T>> tokenize(String str, BiFunction<T, String, Boolean> matcherCallback) throws ParseException {
-        return tokenize(str, tokenMap.values(), matcherCallback);
+        return tokenize(str, getAutomaton(), null, matcherCallback).toTokenInfos();
     }
 
     public List<TokenInfo<T>> tokenize(String str) throws ParseException {
-        return tokenize(str, tokenMap.values(), null);
+        return tokenize(str, getAutomaton(), null, null).toTokenInfos();
     }
-}
 
+    /**
+     * Tokenizes the input of a reader on demand, keeping only a sliding window of the input in memory.
+     * Matches that depend on the end of the currently buffered input are repeated after reading more input.
+     */
+    protected class TokenReader implements Iterator<TokenInfo<T>> {
+        private final Reader reader;
+        private final Automaton<T> tokenAutomaton;
+        private final MatchCallback<T> matchCallback;
+        private final BiFunction<T, String, Boolean> matcherCallback;
+
+        private char[] buffer;
+        private CharBuffer input;
+        private int position;
+        private int limit;
+        private int end;
+        private boolean endOfInput;
+        private boolean pendingCarriageReturn;
+        private boolean trimEnd;
+        private int trimCount;
+        private int tokenCount;
+
+        private Matcher trimStartMatcher;
+        private Matcher trimEndMatcher;
+        private Matcher combinedMatcher;
+        private final Matcher[] tokenMatchers;
+
+        private TokenInfo<T> nextTokenInfo;
+        private boolean finished;
+
+        protected TokenReader(Reader reader, Automaton<T> tokenAutomaton, MatchCallback<T> matchCallback, BiFunction<T, String, Boolean> matcherCallback) {
+            Objects.requireNonNull(reader, "reader must not be null!");
+            this.reader = reader;
+            this.tokenAutomaton = tokenAutomaton;
+            this.matchCallback = matchCallback;
+            this.matcherCallback = matcherCallback;
+            this.buffer = new char[streamBufferSize];
+            this.tokenMatchers = new Matcher[tokenAutomaton.tokens.size()];
+            this.trimEnd = trimPatternEnd != null;
+            fill();
+        }
+
+        private void compact() {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (buffer.length - limit < 2) {
+                if (buffer.length >= maxStreamBufferSize) {
+                    throw new IllegalStateException(String.format("token does not fit into buffer of size %s", maxStreamBufferSize));
+                }
+                buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxStreamBufferSize));
+            }
+        }
+
+        private void read() throws IOException {
+            int read;
+            // keep room for a pending carriage return plus at least one character
+            while (!endOfInput && buffer.length - limit >= 2) {
+                int offset = limit;
+                if (pendingCarriageReturn) {
+                    buffer[limit++] = '\r';
+                    pendingCarriageReturn = false;
+                }
+                read = reader.read(buffer, limit, buffer.length - limit);
+                if (read == -1) {
+                    endOfInput = true;
+                    break;
+                }
+                limit += read;
+                // replace CRLF by LF, a trailing CR is kept back until the next character is known
+                int target = offset;
+                for (int i = offset; i < limit; ++i) {
+                    if (buffer[i] == '\r' && i + 1 < limit && buffer[i + 1] == '\n') {
+                        continue;
+                    }
+                    buffer[target++] = buffer[i];
+                }
+                limit = target;
+                if (limit > offset && buffer[limit - 1] == '\r') {
+                    --limit;
+                    pendingCarriageReturn = true;
+                }
+            }
+        }
+
+        private void fill() {
+            compact();
+            try {
+                read();
+            } catch (IOException exc) {
+                throw new UncheckedIOException(exc);
+            }
+            input = CharBuffer.wrap(buffer, 0, limit);
+            trimStartMatcher = trimPatternStart == null ? null : trimPatternStart.matcher(input);
+            trimEndMatcher = trimPatternEnd == null ? null : trimPatternEnd.matcher(input);
+            combinedMatcher = tokenAutomaton.createMatcher(input);
+            Arrays.fill(tokenMatchers, null);
+            if (endOfInput || trimEndMatcher == null) {
+                end = limit;
+            } else {
+                // trim characters at the end of the buffer might be the end of the input - don't match them before knowing
+                end = limit;
+                trimEndMatcher.region(position, end);
+                while (trimEndMatcher.find() && trimEndMatcher.start() < trimEndMatcher.end()) {
+                    end = trimEndMatcher.start();
+                    trimEndMatcher.region(position, end);
+                }
+            }
+        }
+
+        private void removeTrimmedCharacters(int start, int stop) {
+            System.arraycopy(buffer, stop, buffer, start, end - stop);
+            limit = end - (stop - start);
+            end = limit;
+            input = CharBuffer.wrap(buffer, 0, limit);
+            trimStartMatcher = trimStartMatcher == null ? null : trimStartMatcher.reset(input);
+            trimEndMatcher.reset(input);
+            combinedMatcher = tokenAutomaton.createMatcher(input);
+            Arrays.fill(tokenMatchers, null);
+        }
+
+        protected TokenInfo<T> readNext() throws ParseException {
+            int from = 0;
+            while (true) {
+                int start = trimStart(trimStartMatcher, position, end);
+                if (!endOfInput && trimStartMatcher != null && trimStartMatcher.hitEnd()) {
+                    position = start;
+                    fill();
+                    continue;
+                }
+                position = start;
+                // same as trimming the remaining input once before each token, including the tokens read before the end of the input was known
+                while (endOfInput && trimEnd && trimCount <= tokenCount) {
+                    int trimmedEnd = trimEnd(trimEndMatcher, position, end);
+                    if (trimmedEnd == -1) {
+                        removeTrimmedCharacters(trimEndMatcher.start(), trimEndMatcher.end());
+                    } else {
+                        trimEnd = trimmedEnd != end;
+                        end = trimmedEnd;
+                    }
+                    ++trimCount;
+                }
+                if (position >= end) {
+                    if (endOfInput) {
+                        return null;
+                    }
+                    fill();
+                    continue;
+                }
+
+                int index = tokenAutomaton.match(from == 0 ? combinedMatcher : null, tokenMatchers, input, position, end, from, !endOfInput);
+                while (index >= 0) {
+                    Token<T> info = tokenAutomaton.tokens.get(index);
+                    Matcher matcher = tokenMatchers[index];
+                    int matchEnd = matcher.end();
+                    int sequenceStart = trimStart(trimStartMatcher, matcher.start(), matchEnd);
+                    String sequence = trim(input, sequenceStart, matchEnd, null, trimEndMatcher);
+                    if ((matchCallback == null || matchCallback.apply(info.token, sequence, 0, sequence.length()))
+                            && (matcherCallback == null || matcherCallback.apply(info.token, sequence))) {
+                        position = matchEnd;
+                        ++tokenCount;
+                        return new TokenInfo<>(info.token, sequence);
+                    }
+                    from = index + 1;
+                    index = tokenAutomaton.match(null, tokenMatchers, input, position, end, from, !endOfInput);
+                }
+                if (index == Automaton.HIT_END) {
+                    fill();
+                    continue;
+                }
+                throw new ParseException("Unexpected character in input: " + input.subSequence(position, end), 0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextTokenInfo == null && !finished) {
+                try {
+                    nextTokenInfo = readNext();
+                } catch (ParseException parseException) {
+                    finished = true;
+                    throw new TokenizeException(parseException);
+                }
+                finished = nextTokenInfo == null;
+            }
+            return nextTokenInfo != null;
+        }
+
+        @Override
+        public TokenInfo<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TokenInfo<T> tokenInfo = nextTokenInfo;
+            nextTokenInfo = null;
+            return tokenInfo;
+        }
+    }
+
+    /**
+     * Tokenizes the input of the reader on demand. Only a sliding window of the input is kept in memory, see {@link #setStreamBufferSize(int, int)}.
+     * A {@link ParseException} is rethrown wrapped into a {@link TokenizeException}, an {@link IOException} wrapped into an {@link UncheckedIOException}.
+     * @param reader the reader providing the input
+     * @param matcherCallback callback to decide whether a match is accepted, may be null
+     * @return iterator over the tokens of the input
+     */
+    public Iterator<TokenInfo<T>> iterator(Reader reader, BiFunction<T, String, Boolean> matcherCallback) {
+        return new TokenReader(reader, getAutomaton(), null, matcherCallback);
+    }
+
+    public Iterator<TokenInfo<T>> iterator(Reader reader) {
+        return iterator(reader, null);
+    }
+
+    public Iterator<TokenInfo<T>> iterator(ReadableByteChannel channel, Charset charset) {
+        return iterator(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    public Stream<TokenInfo<T>> stream(Reader reader, BiFunction<T, String, Boolean> matcherCallback) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(reader, matcherCallback), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public Stream<TokenInfo<T>> stream(Reader reader) {
+        return stream(reader, null);
+    }
+}
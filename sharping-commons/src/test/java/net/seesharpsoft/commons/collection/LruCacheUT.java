@@ -0,0 +1,124 @@
+package net.seesharpsoft.commons.collection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LruCacheUT {
+
+    @Test
+    public void get_should_return_put_value_and_count_hits_and_misses() {
+        LruCache<String, Integer> cache = new LruCache<>(10);
+
+        assertThat(cache.get("a"), nullValue());
+        cache.put("a", 1);
+        assertThat(cache.get("a"), is(1));
+        assertThat(cache.get("a"), is(1));
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(2L));
+        assertThat(cache.getEvictionCount(), is(0L));
+    }
+
+    @Test
+    public void put_should_evict_least_recently_used_entry() {
+        LruCache<String, Integer> cache = new LruCache<>(3, 1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.get("a");
+        cache.put("d", 4);
+
+        assertThat(cache.size(), is(3));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.get("b"), nullValue());
+        assertThat(cache.get("a"), is(1));
+        assertThat(cache.get("c"), is(3));
+        assertThat(cache.get("d"), is(4));
+    }
+
+    @Test
+    public void put_should_not_evict_before_small_cache_is_full() {
+        LruCache<Integer, Integer> cache = new LruCache<>(LruCache.MIN_SEGMENT_SIZE);
+        for (int i = 0; i < LruCache.MIN_SEGMENT_SIZE; ++i) {
+            cache.put(i * 1024, i);
+        }
+
+        assertThat(cache.size(), is(LruCache.MIN_SEGMENT_SIZE));
+        assertThat(cache.getEvictionCount(), is(0L));
+    }
+
+    @Test
+    public void size_should_never_exceed_maximum_size() {
+        LruCache<Integer, Integer> cache = new LruCache<>(100);
+        for (int i = 0; i < 1000; ++i) {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size(), lessThanOrEqualTo(100));
+        assertThat(cache.getEvictionCount(), is((long) (1000 - cache.size())));
+    }
+
+    @Test
+    public void clear_and_remove_should_drop_entries() {
+        LruCache<String, Integer> cache = new LruCache<>(10);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        assertThat(cache.remove("a"), is(1));
+        assertThat(cache.size(), is(1));
+        cache.clear();
+        assertThat(cache.size(), is(0));
+
+        cache.resetStatistics();
+        assertThat(cache.getHitCount(), is(0L));
+        assertThat(cache.getMissCount(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_reject_non_positive_size() {
+        new LruCache<>(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void put_should_reject_null_values() {
+        new LruCache<String, Object>(10).put("a", null);
+    }
+
+    @Test
+    public void cache_should_be_usable_concurrently() throws Exception {
+        LruCache<Integer, Integer> cache = new LruCache<>(64);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; ++thread) {
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 10000; ++i) {
+                    int key = i % 128;
+                    Integer value = cache.get(key);
+                    if (value == null) {
+                        cache.put(key, key);
+                    } else {
+                        assertThat(value, is(key));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(cache.size(), lessThanOrEqualTo(64));
+        assertThat(cache.getHitCount() + cache.getMissCount(), is(40000L));
+    }
+}
@@ -4,6 +4,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -128,4 +135,115 @@ public class LexerUT {
         assertThat(lexer.getTokenizer().getToken(1), equalTo(customTokenizer.createToken(1, "[^ ]+", customTokenizer.getCaseSensitive())));
         assertThat(lexer.getTokenizer().getToken(2), equalTo(customTokenizer.createToken(2, "def|hij", customTokenizer.getCaseSensitive())));
     }
+
+    @Test
+    public void tokenize_should_be_usable_by_multiple_threads() throws Exception {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+        lexer.init("/lexer/lexer_init_simple.lex", token -> Integer.parseInt(token));
+
+        List<Tokenizer.TokenInfo<Integer>> expected = lexer.tokenize("abc x abc yz def");
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Tokenizer.TokenInfo<Integer>>>> results = new ArrayList<>();
+            for (int i = 0; i < 200; ++i) {
+                results.add(executorService.submit(() -> lexer.tokenize("abc x abc yz def")));
+            }
+            for (Future<List<Tokenizer.TokenInfo<Integer>>> result : results) {
+                assertThat(result.get(), equalTo(expected));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    enum TestToken {
+        A, B, C
+    }
+
+    @Test
+    public void transition_table_should_resolve_enum_tokens() {
+        Lexer<TestToken> lexer = new Lexer<>();
+
+        Lexer.State<TestToken> first = lexer.addState("first");
+        Lexer.State<TestToken> second = lexer.addState("second");
+        first.addNextState(second, TestToken.A, TestToken.C);
+        second.addNextState(first, TestToken.B);
+
+        Lexer.TransitionTable<TestToken> transitionTable = lexer.getTransitionTable();
+
+        assertThat(transitionTable.getNextState(first, TestToken.A), is(second));
+        assertThat(transitionTable.getNextState(first, TestToken.B), nullValue());
+        assertThat(transitionTable.getNextState(first, TestToken.C), is(second));
+        assertThat(transitionTable.getNextState(second, TestToken.A), nullValue());
+        assertThat(transitionTable.getNextState(second, TestToken.B), is(first));
+    }
+
+    @Test
+    public void transition_table_should_be_rebuilt_after_changes() {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+
+        Lexer.State<Integer> first = lexer.addState("first");
+        first.addNextState(first, 0);
+
+        assertThat(first.getNextState(0), is(first));
+        assertThat(first.getNextState(1), nullValue());
+
+        Lexer.State<Integer> second = lexer.addState("second");
+        first.addNextState(second, 1);
+
+        assertThat(first.getNextState(1), is(second));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addState_should_reject_duplicate_state_names() {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+
+        lexer.addState("test");
+        lexer.addState("test");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addNextState_should_reject_ambiguous_transitions() {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+
+        Lexer.State<Integer> first = lexer.addState("first");
+        Lexer.State<Integer> second = lexer.addState("second");
+        first.addNextState(first, 0, 1);
+        first.addNextState(second, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getTransitionTable_should_reject_transitions_to_unknown_states() {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+        Lexer<Integer> otherLexer = new Lexer<>(tokenizer);
+
+        Lexer.State<Integer> first = lexer.addState("first");
+        otherLexer.addState("other");
+        first.addNextState(otherLexer.addState("second"), 0);
+
+        lexer.getTransitionTable();
+    }
+
+    @Test
+    public void tokenize_reader_should_return_same_tokens_as_tokenize() throws Exception {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+        lexer.init("/lexer/lexer_init_simple.lex", token -> Integer.parseInt(token));
+
+        List<Tokenizer.TokenInfo<Integer>> tokenInfos = new ArrayList<>();
+        lexer.tokenize(new StringReader("abc x abc yz def")).forEachRemaining(tokenInfos::add);
+
+        assertThat(tokenInfos, equalTo(lexer.tokenize("abc x abc yz def")));
+    }
+
+    @Test
+    public void tokenizeStream_should_pass_accepted_tokens_to_callback() throws Exception {
+        Lexer<Integer> lexer = new Lexer<>(tokenizer);
+        lexer.init("/lexer/lexer_init_simple.lex", token -> Integer.parseInt(token));
+
+        List<String> sequences = new ArrayList<>();
+        Tokenizer.TokenStream<Integer> tokenStream = lexer.tokenizeStream("abc x abc yz def", (token, input, start, end) -> sequences.add(input.subSequence(start, end).toString()));
+
+        assertThat(tokenStream.toTokenInfos(), equalTo(lexer.tokenize("abc x abc yz def")));
+        assertThat(sequences, equalTo(Arrays.asList("abc", "x", "abc", "yz", "def")));
+    }
 }
@@ -3,10 +3,19 @@ package net.seesharpsoft.commons.util;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 public class TokenizerUT {
 
@@ -90,4 +99,243 @@ public class TokenizerUT {
                 new Tokenizer.TokenInfo(0, "abc")));
     }
 
+    @Test
+    public void tokenize_should_prefer_first_matching_token() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+        tokenizer.add(1, "[a-z]+");
+
+        assertThat(tokenizer.tokenize("abc abcd"), Matchers.contains(
+                new Tokenizer.TokenInfo(0, "abc"),
+                new Tokenizer.TokenInfo(0, "abc"),
+                new Tokenizer.TokenInfo(1, "d")));
+    }
+
+    @Test
+    public void tokenize_should_try_next_token_if_callback_rejects_match() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+        tokenizer.add(1, "[a-z]+");
+
+        assertThat(tokenizer.tokenize("abc abcd", (token, sequence) -> token != 0), Matchers.contains(
+                new Tokenizer.TokenInfo(1, "abc"),
+                new Tokenizer.TokenInfo(1, "abcd")));
+    }
+
+    @Test(expected = ParseException.class)
+    public void tokenize_should_throw_if_callback_rejects_all_matches() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+
+        tokenizer.tokenize("abc", (token, sequence) -> false);
+    }
+
+    @Test
+    public void tokenize_should_handle_tokens_with_groups_and_lookaheads() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "(a)(b)?(?=c|$)");
+        tokenizer.add(1, "(?<name>c)");
+        tokenizer.add(2, "(a|b)+");
+
+        assertThat(tokenizer.tokenize("abc ab aba"), Matchers.contains(
+                new Tokenizer.TokenInfo(0, "ab"),
+                new Tokenizer.TokenInfo(1, "c"),
+                new Tokenizer.TokenInfo(2, "ab"),
+                new Tokenizer.TokenInfo(2, "aba")));
+    }
+
+    @Test
+    public void tokenize_should_handle_tokens_with_back_references() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "(x)\\2");
+        tokenizer.add(1, "[a-z]");
+
+        assertThat(tokenizer.tokenize("xx y"), Matchers.contains(
+                new Tokenizer.TokenInfo(0, "xx"),
+                new Tokenizer.TokenInfo(1, "y")));
+    }
+
+    @Test
+    public void tokenize_should_respect_case_sensitivity_per_token() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc", true);
+        tokenizer.add(1, "ABC", false);
+
+        assertThat(tokenizer.tokenize("abc Abc ABC"), Matchers.contains(
+                new Tokenizer.TokenInfo(0, "abc"),
+                new Tokenizer.TokenInfo(1, "Abc"),
+                new Tokenizer.TokenInfo(1, "ABC")));
+    }
+
+    @Test
+    public void tokenize_should_trim_sequences() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "=.+?(\\n|$)");
+        tokenizer.add(1, "\\n");
+
+        assertThat(tokenizer.tokenize("\r\n=abc \r\n\n= def  "), Matchers.contains(
+                new Tokenizer.TokenInfo(1, "\n"),
+                new Tokenizer.TokenInfo(0, "=abc\n"),
+                new Tokenizer.TokenInfo(1, "\n"),
+                new Tokenizer.TokenInfo(0, "= def")));
+    }
+
+    @Test
+    public void tokenize_should_use_tokens_added_after_compile() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc").compile();
+        tokenizer.add(1, "def");
+
+        assertThat(tokenizer.tokenize("abc def"), Matchers.contains(
+                new Tokenizer.TokenInfo(0, "abc"),
+                new Tokenizer.TokenInfo(1, "def")));
+    }
+
+    @Test
+    public void tokenizeStream_should_return_offsets_into_input() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+        tokenizer.add(1, "def");
+
+        String input = " def  abc ";
+        Tokenizer.TokenStream<Integer> tokenStream = tokenizer.tokenizeStream(input);
+
+        assertThat(tokenStream.getInput(), sameInstance(input));
+        assertThat(tokenStream.size(), is(2));
+        assertThat(tokenStream.getToken(0), is(1));
+        assertThat(tokenStream.getStart(0), is(1));
+        assertThat(tokenStream.getEnd(0), is(4));
+        assertThat(tokenStream.getToken(1), is(0));
+        assertThat(tokenStream.getStart(1), is(6));
+        assertThat(tokenStream.getEnd(1), is(9));
+        assertThat(tokenStream.getSequence(1), is("abc"));
+    }
+
+    @Test
+    public void tokenizeStream_should_return_same_tokens_as_tokenize() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "=.+?(\\n|$)");
+        tokenizer.add(1, "\\n");
+        tokenizer.add(2, "[a-z]+");
+
+        String input = "abc\r\n=abc \r\n\n= def  ";
+
+        assertThat(tokenizer.tokenizeStream(input).toTokenInfos(), equalTo(tokenizer.tokenize(input)));
+    }
+
+    @Test
+    public void tokenizeStream_should_pass_token_range_to_callback() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "[a-z]+");
+        tokenizer.add(1, "[a-z]");
+
+        Tokenizer.TokenStream<Integer> tokenStream = tokenizer.tokenizeStream("ab abc", (token, input, start, end) -> token == 1 || end - start > 2);
+
+        assertThat(tokenStream.toTokenInfos(), Matchers.contains(
+                new Tokenizer.TokenInfo(1, "a"),
+                new Tokenizer.TokenInfo(1, "b"),
+                new Tokenizer.TokenInfo(0, "abc")));
+    }
+
+    private static <T> List<Tokenizer.TokenInfo<T>> toList(Iterator<Tokenizer.TokenInfo<T>> iterator) {
+        List<Tokenizer.TokenInfo<T>> tokenInfos = new ArrayList<>();
+        iterator.forEachRemaining(tokenInfos::add);
+        return tokenInfos;
+    }
+
+    @Test
+    public void iterator_should_return_same_tokens_as_tokenize() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "=.+?(\\n|$)");
+        tokenizer.add(1, "\\n");
+        tokenizer.add(2, "[a-z]+");
+        tokenizer.add(3, "[a-z]");
+        tokenizer.setStreamBufferSize(2, 64);
+
+        String input = "abc\r\n=abc \r\n\n= def  \r\n   xyz\r";
+
+        assertThat(toList(tokenizer.iterator(new StringReader(input))), equalTo(tokenizer.tokenize(input)));
+        assertThat(toList(tokenizer.iterator(new StringReader(input), (token, sequence) -> token != 2 || sequence.length() < 3)),
+                equalTo(tokenizer.tokenize(input, (token, sequence) -> token != 2 || sequence.length() < 3)));
+    }
+
+    @Test
+    public void iterator_should_not_buffer_whole_input() throws ParseException {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+        tokenizer.add(1, "[a-z]+");
+        tokenizer.setStreamBufferSize(8, 16);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; ++i) {
+            builder.append("abc defg  ");
+        }
+        String input = builder.toString();
+
+        assertThat(toList(tokenizer.iterator(new StringReader(input))), equalTo(tokenizer.tokenize(input)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iterator_should_throw_if_token_exceeds_buffer() {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "[a-z]+");
+        tokenizer.setStreamBufferSize(4, 8);
+
+        toList(tokenizer.iterator(new StringReader("abc abcdefghijklmn")));
+    }
+
+    @Test
+    public void iterator_should_wrap_parse_exception() {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+
+        Iterator<Tokenizer.TokenInfo<Integer>> iterator = tokenizer.iterator(new StringReader("abc def"));
+
+        assertThat(iterator.next(), equalTo(new Tokenizer.TokenInfo(0, "abc")));
+        try {
+            iterator.hasNext();
+            fail("exception expected");
+        } catch (Tokenizer.TokenizeException exc) {
+            assertThat(exc.getCause(), instanceOf(ParseException.class));
+        }
+    }
+
+    @Test
+    public void iterator_should_read_from_channel() {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+        tokenizer.add(1, "d\u00e9f");
+
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream("abc d\u00e9f".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(toList(tokenizer.iterator(channel, StandardCharsets.UTF_8)), Matchers.contains(
+                new Tokenizer.TokenInfo(0, "abc"),
+                new Tokenizer.TokenInfo(1, "d\u00e9f")));
+    }
+
+    @Test
+    public void stream_should_return_tokens() {
+        Tokenizer<Integer> tokenizer = new Tokenizer();
+
+        tokenizer.add(0, "abc");
+        tokenizer.add(1, "def");
+
+        assertThat(tokenizer.stream(new StringReader("abc def abc")).filter(tokenInfo -> tokenInfo.token == 0).count(), is(2L));
+    }
 }
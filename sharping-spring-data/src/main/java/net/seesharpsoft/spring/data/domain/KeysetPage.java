@@ -0,0 +1,40 @@
+package net.seesharpsoft.spring.data.domain;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page of a {@link KeysetRequest} - keeps the sort key values of its last row to create the request for the next page.
+ */
+public class KeysetPage<T> extends PageImpl<T> {
+
+    private final KeysetRequest request;
+    private final List<Object> lastKeys;
+
+    /**
+     * @param lastKeys the sort key values of the last row, null if not available - the next page is requested by offset then
+     */
+    public KeysetPage(List<T> content, KeysetRequest request, long total, List<?> lastKeys) {
+        super(content, request, total);
+        this.request = request;
+        this.lastKeys = lastKeys == null ? null : Collections.unmodifiableList(lastKeys);
+    }
+
+    /**
+     * @return the sort key values of the last row, null if not available
+     */
+    public List<Object> getLastKeys() {
+        return lastKeys;
+    }
+
+    @Override
+    public Pageable nextPageable() {
+        if (!hasNext()) {
+            return Pageable.unpaged();
+        }
+        return lastKeys == null ? request.next() : request.next(lastKeys);
+    }
+}
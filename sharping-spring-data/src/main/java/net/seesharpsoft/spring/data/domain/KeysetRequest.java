@@ -0,0 +1,323 @@
+package net.seesharpsoft.spring.data.domain;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Keyset (seek) pagination - instead of skipping a number of rows, the next page starts after the sort key values of the last row seen.
+ * The keys can be passed around as an opaque continuation token, see {@link #getToken()} and {@link #of(String, int, Sort)} - the token
+ * includes the sort, so it can not be applied to a differently sorted request.
+ * The sort must be unique for the rows, e.g. end with the id, and key values must not be null.
+ * {@link #getOffset()} is the logical position of the page only, a repository must not skip rows for it.
+ */
+public class KeysetRequest implements Pageable {
+
+    private static final char STRING_TAG = 's';
+    private static final char INTEGER_TAG = 'i';
+    private static final char LONG_TAG = 'l';
+    private static final char SHORT_TAG = 'h';
+    private static final char BYTE_TAG = 'y';
+    private static final char DOUBLE_TAG = 'd';
+    private static final char FLOAT_TAG = 'f';
+    private static final char BIG_DECIMAL_TAG = 'D';
+    private static final char BIG_INTEGER_TAG = 'I';
+    private static final char BOOLEAN_TAG = 'z';
+    private static final char DATE_TAG = 't';
+    private static final char LOCAL_DATE_TAG = 'L';
+    private static final char LOCAL_DATE_TIME_TAG = 'T';
+    private static final char INSTANT_TAG = 'N';
+    private static final char OFFSET_DATE_TIME_TAG = 'O';
+
+    private final int pageNumber;
+    private final List<Object> keys;
+    private final int limit;
+    private final Sort sort;
+
+    public KeysetRequest(int pageNumber, List<?> keys, int limit, Sort sort) {
+        Assert.isTrue(pageNumber >= 0, "pageNumber must be greater or equal than 0!");
+        Assert.isTrue(limit > 0, "limit must be greater than 0!");
+        Assert.notNull(sort, "sort must not be null!");
+        Assert.isTrue(sort.isSorted(), "keyset pagination requires a sort!");
+        if (keys != null) {
+            Assert.isTrue(keys.size() == sort.stream().count(), "one key per sort order expected!");
+            Assert.noNullElements(keys.toArray(), "keys must not be null!");
+        }
+        this.pageNumber = pageNumber;
+        this.keys = keys == null ? null : Collections.unmodifiableList(new ArrayList<>(keys));
+        this.limit = limit;
+        this.sort = sort;
+    }
+
+    public KeysetRequest(int limit, Sort sort) {
+        this(0, null, limit, sort);
+    }
+
+    /**
+     * Creates the request for the page after the given continuation token.
+     *
+     * @param token the token of a previous request, null or empty for the first page
+     * @param limit the page size
+     * @param sort the sort the token was created for - if unsorted, the sort of the token is used
+     * @return the request
+     * @throws IllegalArgumentException if the token is invalid or was created for another sort
+     */
+    public static KeysetRequest of(String token, int limit, Sort sort) {
+        if (token == null || token.isEmpty()) {
+            return new KeysetRequest(limit, sort);
+        }
+        int pageNumber;
+        List<Sort.Order> orders;
+        List<Object> keys;
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            pageNumber = input.readInt();
+            int size = input.readInt();
+            Assert.isTrue(size > 0 && size <= input.available(), "invalid token!");
+            orders = new ArrayList<>(size);
+            keys = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                String property = input.readUTF();
+                orders.add(input.readBoolean() ? Sort.Order.asc(property) : Sort.Order.desc(property));
+                keys.add(readKey(input));
+            }
+            Assert.isTrue(input.available() == 0, "invalid token!");
+        } catch (IOException | RuntimeException exc) {
+            throw new IllegalArgumentException(String.format("invalid token '%s'", token), exc);
+        }
+        Sort tokenSort = Sort.by(orders);
+        if (sort == null || sort.isUnsorted()) {
+            return new KeysetRequest(pageNumber, keys, limit, tokenSort);
+        }
+        Assert.isTrue(isSameOrder(sort, tokenSort), String.format("token '%s' was created for sort '%s'", token, tokenSort));
+        return new KeysetRequest(pageNumber, keys, limit, sort);
+    }
+
+    /**
+     * Compares properties and directions only - the token does not keep further settings of the orders.
+     */
+    private static boolean isSameOrder(Sort sort, Sort tokenSort) {
+        Iterator<Sort.Order> tokenOrders = tokenSort.iterator();
+        for (Sort.Order order : sort) {
+            if (!tokenOrders.hasNext()) {
+                return false;
+            }
+            Sort.Order tokenOrder = tokenOrders.next();
+            if (!order.getProperty().equals(tokenOrder.getProperty()) || order.getDirection() != tokenOrder.getDirection()) {
+                return false;
+            }
+        }
+        return !tokenOrders.hasNext();
+    }
+
+    private static Object readKey(DataInputStream input) throws IOException {
+        char tag = input.readChar();
+        switch (tag) {
+            case STRING_TAG:
+                return input.readUTF();
+            case INTEGER_TAG:
+                return input.readInt();
+            case LONG_TAG:
+                return input.readLong();
+            case SHORT_TAG:
+                return input.readShort();
+            case BYTE_TAG:
+                return input.readByte();
+            case DOUBLE_TAG:
+                return input.readDouble();
+            case FLOAT_TAG:
+                return input.readFloat();
+            case BIG_DECIMAL_TAG:
+                return new BigDecimal(input.readUTF());
+            case BIG_INTEGER_TAG:
+                return new BigInteger(input.readUTF());
+            case BOOLEAN_TAG:
+                return input.readBoolean();
+            case DATE_TAG:
+                return new Date(input.readLong());
+            case LOCAL_DATE_TAG:
+                return LocalDate.parse(input.readUTF());
+            case LOCAL_DATE_TIME_TAG:
+                return LocalDateTime.parse(input.readUTF());
+            case INSTANT_TAG:
+                return Instant.parse(input.readUTF());
+            case OFFSET_DATE_TIME_TAG:
+                return OffsetDateTime.parse(input.readUTF());
+            default:
+                throw new IllegalArgumentException(String.format("unknown key type '%s'", tag));
+        }
+    }
+
+    private static void writeKey(DataOutputStream output, Object key) throws IOException {
+        if (key instanceof String) {
+            output.writeChar(STRING_TAG);
+            output.writeUTF((String) key);
+        } else if (key instanceof Integer) {
+            output.writeChar(INTEGER_TAG);
+            output.writeInt((Integer) key);
+        } else if (key instanceof Long) {
+            output.writeChar(LONG_TAG);
+            output.writeLong((Long) key);
+        } else if (key instanceof Short) {
+            output.writeChar(SHORT_TAG);
+            output.writeShort((Short) key);
+        } else if (key instanceof Byte) {
+            output.writeChar(BYTE_TAG);
+            output.writeByte((Byte) key);
+        } else if (key instanceof Double) {
+            output.writeChar(DOUBLE_TAG);
+            output.writeDouble((Double) key);
+        } else if (key instanceof Float) {
+            output.writeChar(FLOAT_TAG);
+            output.writeFloat((Float) key);
+        } else if (key instanceof BigDecimal) {
+            output.writeChar(BIG_DECIMAL_TAG);
+            output.writeUTF(key.toString());
+        } else if (key instanceof BigInteger) {
+            output.writeChar(BIG_INTEGER_TAG);
+            output.writeUTF(key.toString());
+        } else if (key instanceof Boolean) {
+            output.writeChar(BOOLEAN_TAG);
+            output.writeBoolean((Boolean) key);
+        } else if (key instanceof Date) {
+            output.writeChar(DATE_TAG);
+            output.writeLong(((Date) key).getTime());
+        } else if (key instanceof LocalDate) {
+            output.writeChar(LOCAL_DATE_TAG);
+            output.writeUTF(key.toString());
+        } else if (key instanceof LocalDateTime) {
+            output.writeChar(LOCAL_DATE_TIME_TAG);
+            output.writeUTF(key.toString());
+        } else if (key instanceof Instant) {
+            output.writeChar(INSTANT_TAG);
+            output.writeUTF(key.toString());
+        } else if (key instanceof OffsetDateTime) {
+            output.writeChar(OFFSET_DATE_TIME_TAG);
+            output.writeUTF(key.toString());
+        } else {
+            throw new IllegalArgumentException(String.format("key type '%s' is not supported", key.getClass().getName()));
+        }
+    }
+
+    /**
+     * @return the sort key values of the last row of the previous page, null for the first page
+     */
+    public List<Object> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return the opaque continuation token of this request, null for the first page
+     * @throws IllegalArgumentException if a key type is not supported
+     */
+    public String getToken() {
+        if (keys == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(pageNumber);
+            output.writeInt(keys.size());
+            Iterator<Sort.Order> orders = sort.iterator();
+            for (Object key : keys) {
+                Sort.Order order = orders.next();
+                output.writeUTF(order.getProperty());
+                output.writeBoolean(order.isAscending());
+                writeKey(output, key);
+            }
+        } catch (IOException exc) {
+            throw new IllegalStateException(exc);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Creates the request for the next page.
+     *
+     * @param lastKeys the sort key values of the last row of this page
+     * @return the request for the next page
+     */
+    public KeysetRequest next(List<?> lastKeys) {
+        Assert.notNull(lastKeys, "lastKeys must not be null!");
+        return new KeysetRequest(pageNumber + 1, lastKeys, limit, sort);
+    }
+
+    public KeysetRequest next(Object... lastKeys) {
+        return next(Arrays.asList(lastKeys));
+    }
+
+    @Override
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    @Override
+    public int getPageSize() {
+        return limit;
+    }
+
+    @Override
+    public long getOffset() {
+        return (long) pageNumber * limit;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * The next keyset page depends on the keys of the last row, see {@link #next(List)} - without them, the request for the next page
+     * by offset is returned. Pages returned by a repository provide the keyset request via {@link KeysetPage#nextPageable()}.
+     */
+    @Override
+    public Pageable next() {
+        return new OffsetLimitRequest(getOffset() + getPageSize(), getPageSize(), getSort());
+    }
+
+    /**
+     * Keyset pages can only be navigated forward - returns the first page.
+     */
+    @Override
+    public Pageable previousOrFirst() {
+        return first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new KeysetRequest(getPageSize(), getSort());
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return pageNumber > 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof KeysetRequest)) {
+            return false;
+        }
+        KeysetRequest otherRequest = (KeysetRequest) other;
+        return pageNumber == otherRequest.pageNumber && limit == otherRequest.limit &&
+                Objects.equals(keys, otherRequest.keys) && Objects.equals(sort, otherRequest.sort);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pageNumber, keys, limit, sort);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Keyset request [page: %d, keys: %s, limit: %d, sort: %s]", getPageNumber(), getKeys(), getPageSize(), getSort());
+    }
+}
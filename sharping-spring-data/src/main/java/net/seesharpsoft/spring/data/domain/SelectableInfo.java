@@ -4,11 +4,13 @@ import lombok.Getter;
 import net.seesharpsoft.spring.data.jpa.expression.Operand;
 import net.seesharpsoft.spring.data.jpa.expression.Operation;
 import net.seesharpsoft.spring.data.jpa.selectable.*;
+import org.springframework.util.Assert;
 import org.springframework.util.ReflectionUtils;
 
 import javax.persistence.Transient;
 import javax.persistence.criteria.JoinType;
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -79,6 +81,12 @@ public class SelectableInfo<T> {
     @Getter
     protected final Operation having;
 
+    @Getter
+    protected final int resultCacheSize;
+
+    @Getter
+    protected final Duration resultCacheTimeToLive;
+
     public SelectableInfo(SqlParser parser, Class<T> selectableClass) {
         this.selectableClass = selectableClass;
 
@@ -88,12 +96,18 @@ public class SelectableInfo<T> {
             this.joins = createJoinInfos(parser, selectableAnnotation.joins());
             this.where = parser.parseExpression(selectableAnnotation.where());
             this.having = parser.parseExpression(selectableAnnotation.having());
+            ResultCache resultCache = selectableAnnotation.resultCache();
+            Assert.isTrue(resultCache.size() >= 0, "result cache size must not be negative!");
+            this.resultCacheSize = resultCache.size();
+            this.resultCacheTimeToLive = resultCache.timeToLive().isEmpty() ? null : Duration.parse(resultCache.timeToLive());
 
         } else {
             this.rootClass = selectableClass;
             this.joins = Collections.emptyList();
             this.where = null;
             this.having = null;
+            this.resultCacheSize = 0;
+            this.resultCacheTimeToLive = null;
         }
 
         this.fields = createSelectableFields(parser);
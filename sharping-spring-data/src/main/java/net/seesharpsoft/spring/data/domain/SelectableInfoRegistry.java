@@ -0,0 +1,47 @@
+package net.seesharpsoft.spring.data.domain;
+
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe registry of {@link SelectableInfo}s - each selectable class is reflected and its expressions are parsed once
+ * and shared by all repositories of the class.
+ */
+public class SelectableInfoRegistry {
+
+    protected final SqlParser sqlParser;
+
+    private final Map<Class<?>, SelectableInfo<?>> selectableInfos = new ConcurrentHashMap<>();
+
+    public SelectableInfoRegistry(SqlParser sqlParser) {
+        Assert.notNull(sqlParser, "sqlParser must not be null!");
+        this.sqlParser = sqlParser;
+    }
+
+    /**
+     * Returns the info of the selectable class, creating it if not registered yet.
+     *
+     * @param selectableClass the selectable class
+     * @return the info
+     */
+    public <T> SelectableInfo<T> getSelectableInfo(Class<T> selectableClass) {
+        Assert.notNull(selectableClass, "selectableClass must not be null!");
+        return (SelectableInfo<T>) selectableInfos.computeIfAbsent(selectableClass, key -> new SelectableInfo<>(sqlParser, key));
+    }
+
+    /**
+     * Creates the infos of all given selectable classes in parallel - meant to be called once at startup.
+     *
+     * @param selectableClasses the selectable classes
+     */
+    public void register(Collection<Class<?>> selectableClasses) {
+        selectableClasses.parallelStream().forEach(this::getSelectableInfo);
+    }
+
+    public boolean isRegistered(Class<?> selectableClass) {
+        return selectableInfos.containsKey(selectableClass);
+    }
+}
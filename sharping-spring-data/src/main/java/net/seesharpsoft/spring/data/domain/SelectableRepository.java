@@ -7,7 +7,11 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.repository.NoRepositoryBean;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @NoRepositoryBean
 public interface SelectableRepository<T> extends JpaSpecificationExecutor<T> {
@@ -22,4 +26,77 @@ public interface SelectableRepository<T> extends JpaSpecificationExecutor<T> {
     default List<T> findAll(Sort sort) {
         return findAll(null, sort);
     }
+
+    /**
+     * Loads the page - possibly on another thread, which does not see the changes of the current transaction.
+     * The total count is only waited for if it can not be derived from the rows of the page.
+     *
+     * The default implementation loads the page on the calling thread via {@link #findAll(Specification, Pageable)}.
+     *
+     * @param spec the specification, may be null
+     * @param pageable the pageable, may be null
+     * @return the future page
+     */
+    default CompletableFuture<Page<T>> findAllAsync(Specification<T> spec, Pageable pageable) {
+        return CompletableFuture.completedFuture(findAll(spec, pageable == null ? Pageable.unpaged() : pageable));
+    }
+
+    /**
+     * Evicts all cached results, see {@link net.seesharpsoft.spring.data.jpa.selectable.Selectable#resultCache()}.
+     * Does nothing by default, as results are not cached then.
+     */
+    default void evictCachedResults() {
+        // nothing cached
+    }
+
+    /**
+     * Evicts the cached results if the selectable depends on the given entity class - to be called after entities of that class changed.
+     *
+     * Does nothing by default, as results are not cached then.
+     *
+     * @param entityClass the changed entity class
+     */
+    default void evictCachedResults(Class<?> entityClass) {
+        // nothing cached
+    }
+
+    /**
+     * Loads the rows of the given ids of the root entity - in the order of the ids, rows not found are omitted and repeated ids are returned once.
+     * All rows of an id are returned if there are several, e.g. due to joined collections.
+     *
+     * The default implementation does not know the id of the rows and is not supported.
+     *
+     * @param ids the ids
+     * @return the rows
+     * @throws IllegalStateException if the selectable does not select the id of the root entity
+     * @throws UnsupportedOperationException if not implemented
+     */
+    default List<T> findAllByIds(Collection<?> ids) {
+        throw new UnsupportedOperationException("findAllByIds is not supported by this repository");
+    }
+
+    /**
+     * Streams the rows instead of loading all of them - the stream must be closed and consumed within a transaction.
+     * The default implementation streams the loaded rows of {@link #findAll(Specification, Sort)}.
+     *
+     * @param spec the filter, may be null
+     * @param sort the sort, may be null
+     * @return the rows
+     */
+    default Stream<T> streamAll(Specification<T> spec, Sort sort) {
+        return findAll(spec, sort == null ? Sort.unsorted() : sort).stream();
+    }
+
+    /**
+     * Passes the rows one by one to the consumer without loading all of them - must be called within a transaction.
+     *
+     * @param spec the filter, may be null
+     * @param sort the sort, may be null
+     * @param consumer the consumer of the rows
+     */
+    default void streamAll(Specification<T> spec, Sort sort, Consumer<? super T> consumer) {
+        try (Stream<T> stream = streamAll(spec, sort)) {
+            stream.forEach(consumer);
+        }
+    }
 }
@@ -1,7 +1,18 @@
 package net.seesharpsoft.spring.data.domain;
 
+import java.util.Collection;
+
 public interface SelectableRepositoryFactory {
 
+    /**
+     * Prepares the metadata of the selectable classes upfront, so creating their repositories later on does not need to.
+     * Does nothing by default.
+     *
+     * @param selectableClasses the selectable classes
+     */
+    default void registerSelectables(Collection<Class<?>> selectableClasses) {
+    }
+
     <T> SelectableRepository<T> createRepository(Class<? extends SelectableRepository> implClass, Class<T> selectableClass);
 
     <T> SelectableRepository<T> createRepository(Class<T> selectableClass);
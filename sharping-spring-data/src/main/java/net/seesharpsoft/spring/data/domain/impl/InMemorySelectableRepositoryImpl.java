@@ -0,0 +1,239 @@
+package net.seesharpsoft.spring.data.domain.impl;
+
+import net.seesharpsoft.spring.data.domain.KeysetRequest;
+import net.seesharpsoft.spring.data.domain.SelectableInfo;
+import net.seesharpsoft.spring.data.domain.SqlParser;
+import net.seesharpsoft.spring.data.jpa.JpaVendorUtilProxy;
+import net.seesharpsoft.spring.data.jpa.OperationSpecification;
+import net.seesharpsoft.spring.data.jpa.expression.ColumnBatch;
+import net.seesharpsoft.spring.data.jpa.expression.Operands;
+import net.seesharpsoft.spring.data.jpa.expression.OperationCompiler;
+import net.seesharpsoft.spring.data.jpa.expression.Operators;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Selectable repository answering queries from an in-memory copy of all rows of the selectable - meant for small, rarely changing datasets
+ * like catalogs or lookup tables. The rows are loaded with the first query and reloaded via {@link #refresh()} or - if a refresh interval
+ * is set - with the first query after the interval elapsed.
+ * Filters of an {@link OperationSpecification} and sort properties are resolved against the fields of the selectable class.
+ * Other specifications and filters referencing anything else are passed to the database.
+ *
+ * @param <T> the selectable class
+ */
+public class InMemorySelectableRepositoryImpl<T> extends SelectableRepositoryImpl<T> {
+
+    private static final Predicate ALL_ROWS = row -> true;
+
+    protected final OperationCompiler operationCompiler;
+
+    private final Set<String> indexedFields = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Function<T, Object>> sortFunctions = new ConcurrentHashMap<>();
+
+    private volatile ColumnBatch<T> batch;
+
+    private volatile long loadTime;
+
+    private volatile Duration refreshInterval;
+
+    public InMemorySelectableRepositoryImpl(JpaVendorUtilProxy jpaVendorUtilProxy, EntityManager entityManager, SqlParser sqlParser, Class<T> selectableClass) {
+        this(jpaVendorUtilProxy, entityManager, sqlParser, new SelectableInfo<>(sqlParser, selectableClass));
+    }
+
+    public InMemorySelectableRepositoryImpl(JpaVendorUtilProxy jpaVendorUtilProxy, EntityManager entityManager, SqlParser sqlParser, SelectableInfo<T> selectableInfo) {
+        super(jpaVendorUtilProxy, entityManager, sqlParser, selectableInfo);
+        this.operationCompiler = new OperationCompiler();
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * @param refreshInterval the maximum age of the rows, null to keep them until {@link #refresh()} is called
+     */
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Creates a sorted index on the given field of the selectable class.
+     *
+     * @param field the name of the field
+     * @throws IllegalArgumentException if the field does not exist
+     */
+    public void addIndex(String field) {
+        operationCompiler.compileFunction(Operands.asReference(field), selectableInfo.getSelectableClass());
+        indexedFields.add(field);
+        ColumnBatch<T> current = batch;
+        if (current != null) {
+            current.addIndex(field);
+        }
+    }
+
+    /**
+     * Loads all rows of the selectable from the database.
+     */
+    public synchronized void refresh() {
+        ColumnBatch<T> newBatch = new ColumnBatch<>(super.findAll((Specification) null), selectableInfo.getSelectableClass(), operationCompiler);
+        indexedFields.forEach(newBatch::addIndex);
+        loadTime = System.nanoTime();
+        batch = newBatch;
+    }
+
+    protected boolean isExpired() {
+        Duration interval = refreshInterval;
+        return interval != null && System.nanoTime() - loadTime > interval.toNanos();
+    }
+
+    protected ColumnBatch<T> getBatch() {
+        if (batch == null || isExpired()) {
+            synchronized (this) {
+                if (batch == null || isExpired()) {
+                    refresh();
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Compiles the specification into a filter on the fields of the selectable class and checks whether the sort can be evaluated on them.
+     * The filter is compiled once per query and passed to the batch as is.
+     *
+     * @return the filter - matching all rows if the specification is null - or null if the query has to be passed to the database
+     */
+    protected Predicate<T> getInMemoryFilter(Specification spec, Sort sort) {
+        try {
+            Predicate<T> filter = ALL_ROWS;
+            if (spec != null) {
+                if (!(spec instanceof OperationSpecification)) {
+                    return null;
+                }
+                filter = operationCompiler.compilePredicate(((OperationSpecification) spec).getOperation(), selectableInfo.getSelectableClass());
+            }
+            if (sort != null) {
+                sort.forEach(order -> getSortFunction(order.getProperty()));
+            }
+            return filter;
+        } catch (IllegalArgumentException exc) {
+            return null;
+        }
+    }
+
+    protected List<T> select(Predicate<T> filter) {
+        ColumnBatch<T> current = getBatch();
+        if (filter == ALL_ROWS) {
+            List<T> result = new ArrayList<>(current.size());
+            for (int i = 0; i < current.size(); ++i) {
+                result.add(current.get(i));
+            }
+            return result;
+        }
+        return current.selectCompiled(filter);
+    }
+
+    protected Function<T, Object> getSortFunction(String property) {
+        return sortFunctions.computeIfAbsent(property,
+                key -> operationCompiler.compileFunction(Operands.asReference(key), selectableInfo.getSelectableClass()));
+    }
+
+    /**
+     * Null values are lower than any other value unless the null handling of the order says otherwise.
+     */
+    protected Comparator<T> getComparator(Sort.Order order) {
+        Function<T, Object> function = getSortFunction(order.getProperty());
+        boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NATIVE ? order.isAscending() : order.getNullHandling() == Sort.NullHandling.NULLS_FIRST;
+        return (x, y) -> {
+            Object xValue = function.apply(x);
+            Object yValue = function.apply(y);
+            if (xValue == null || yValue == null) {
+                return xValue == yValue ? 0 : (xValue == null) == nullsFirst ? -1 : 1;
+            }
+            int compareResult;
+            if (order.isIgnoreCase() && xValue instanceof String && yValue instanceof String) {
+                compareResult = ((String) xValue).compareToIgnoreCase((String) yValue);
+            } else {
+                Assert.isInstanceOf(Comparable.class, xValue, "comparable values expected!");
+                compareResult = Operators.compareTo((Comparable) xValue, (Comparable) yValue);
+            }
+            return order.isAscending() ? compareResult : -compareResult;
+        };
+    }
+
+    protected List<T> sort(List<T> rows, Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return rows;
+        }
+        Comparator<T> comparator = null;
+        for (Sort.Order order : sort) {
+            comparator = comparator == null ? getComparator(order) : comparator.thenComparing(getComparator(order));
+        }
+        rows.sort(comparator);
+        return rows;
+    }
+
+    @Override
+    public List<T> findAll(Specification spec) {
+        Predicate<T> filter = getInMemoryFilter(spec, null);
+        if (filter == null) {
+            return super.findAll(spec);
+        }
+        return select(filter);
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> findAllAsync(Specification spec, Pageable pageable) {
+        Sort sort = pageable == null || pageable.isUnpaged() ? null : pageable.getSort();
+        // keyset requests are passed to the database as the sort keys may not be fields of the selectable
+        Predicate<T> filter = pageable instanceof KeysetRequest ? null : getInMemoryFilter(spec, sort);
+        if (filter == null) {
+            return super.findAllAsync(spec, pageable);
+        }
+        List<T> result = sort(select(filter), sort);
+        if (pageable == null || pageable.isUnpaged()) {
+            return CompletableFuture.completedFuture(new PageImpl<>(result));
+        }
+        int from = (int) Math.min(pageable.getOffset(), result.size());
+        int to = Math.min(from + pageable.getPageSize(), result.size());
+        return CompletableFuture.completedFuture(new PageImpl<>(new ArrayList<>(result.subList(from, to)), pageable, result.size()));
+    }
+
+    @Override
+    public List<T> findAll(Specification spec, Sort sort) {
+        Predicate<T> filter = getInMemoryFilter(spec, sort);
+        if (filter == null) {
+            return super.findAll(spec, sort);
+        }
+        return sort(select(filter), sort);
+    }
+
+    @Override
+    public Stream<T> streamAll(Specification spec, Sort sort) {
+        Predicate<T> filter = getInMemoryFilter(spec, sort);
+        if (filter == null) {
+            return super.streamAll(spec, sort);
+        }
+        return sort(select(filter), sort).stream();
+    }
+
+    @Override
+    public long count(Specification spec) {
+        Predicate<T> filter = getInMemoryFilter(spec, null);
+        if (filter == null) {
+            return super.count(spec);
+        }
+        return filter == ALL_ROWS ? getBatch().size() : getBatch().filterCompiled(filter).cardinality();
+    }
+}
@@ -1,14 +1,18 @@
 package net.seesharpsoft.spring.data.domain.impl;
 
+import net.seesharpsoft.spring.data.domain.SelectableInfo;
+import net.seesharpsoft.spring.data.domain.SelectableInfoRegistry;
 import net.seesharpsoft.spring.data.domain.SelectableRepository;
 import net.seesharpsoft.spring.data.domain.SelectableRepositoryFactory;
 import net.seesharpsoft.spring.data.domain.SqlParser;
 import net.seesharpsoft.spring.data.jpa.JpaVendorUtilProxy;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import javax.persistence.EntityManager;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.ServiceLoader;
 
@@ -22,10 +26,22 @@ public class SelectableRepositoryFactoryImpl implements SelectableRepositoryFact
 
     protected final SqlParser sqlParser;
 
+    protected final SelectableInfoRegistry selectableInfoRegistry;
+
     public SelectableRepositoryFactoryImpl(EntityManager entityManager, SqlParser sqlParser) {
         this.jpaVendorUtilProxy = getJpaVendorUtilProxy();
         this.entityManager = entityManager;
         this.sqlParser = sqlParser;
+        this.selectableInfoRegistry = new SelectableInfoRegistry(sqlParser);
+    }
+
+    public SelectableInfoRegistry getSelectableInfoRegistry() {
+        return selectableInfoRegistry;
+    }
+
+    @Override
+    public void registerSelectables(Collection<Class<?>> selectableClasses) {
+        selectableInfoRegistry.register(selectableClasses);
     }
 
     protected JpaVendorUtilProxy getJpaVendorUtilProxy() {
@@ -37,6 +53,12 @@ public class SelectableRepositoryFactoryImpl implements SelectableRepositoryFact
     @Override
     public <T> SelectableRepository<T> createRepository(Class<? extends SelectableRepository> implClass, Class<T> selectableClass) {
         try {
+            // implementations accepting the info share the one of the registry instead of creating their own
+            Constructor<? extends SelectableRepository> selectableInfoConstructor =
+                    ClassUtils.getConstructorIfAvailable(implClass, JpaVendorUtilProxy.class, EntityManager.class, SqlParser.class, SelectableInfo.class);
+            if (selectableInfoConstructor != null) {
+                return selectableInfoConstructor.newInstance(jpaVendorUtilProxy, entityManager, sqlParser, selectableInfoRegistry.getSelectableInfo(selectableClass));
+            }
             Constructor<? extends SelectableRepository> selectableRepositoryConstructor = implClass.getConstructor(JpaVendorUtilProxy.class, EntityManager.class, SqlParser.class, Class.class);
             return selectableRepositoryConstructor.newInstance(jpaVendorUtilProxy, entityManager, sqlParser, selectableClass);
         } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException exc) {
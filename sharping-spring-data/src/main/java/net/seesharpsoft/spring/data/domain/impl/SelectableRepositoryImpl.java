@@ -2,29 +2,60 @@ package net.seesharpsoft.spring.data.domain.impl;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import net.seesharpsoft.commons.collection.LruCache;
+import net.seesharpsoft.spring.data.domain.KeysetPage;
+import net.seesharpsoft.spring.data.domain.KeysetRequest;
 import net.seesharpsoft.spring.data.domain.SelectableInfo;
 import net.seesharpsoft.spring.data.domain.SelectableRepository;
 import net.seesharpsoft.spring.data.domain.SqlParser;
 import net.seesharpsoft.spring.data.jpa.JpaVendorUtilProxy;
 import net.seesharpsoft.spring.data.jpa.ExpressionHolder;
+import net.seesharpsoft.spring.data.jpa.OperationSpecification;
+import net.seesharpsoft.spring.data.jpa.expression.Operand;
 import net.seesharpsoft.spring.data.jpa.expression.Operands;
+import net.seesharpsoft.spring.data.jpa.expression.Operation;
+import net.seesharpsoft.spring.data.jpa.expression.Operators;
+import net.seesharpsoft.spring.data.jpa.expression.ResolutionContext;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TupleElement;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
 import javax.persistence.metamodel.SingularAttribute;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Optional;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SelectableRepositoryImpl<T> implements SelectableRepository<T> {
 
+    @AllArgsConstructor
+    private static class CachedResult {
+        private final Object value;
+        private final long loadTime;
+    }
+
     @AllArgsConstructor
     private static class SimpleTupleElement implements ExpressionHolder {
 
@@ -52,15 +83,285 @@ public class SelectableRepositoryImpl<T> implements SelectableRepository<T> {
 
     protected final JpaVendorUtilProxy jpaVendorUtilProxy;
 
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 64;
+
+    public static final int DEFAULT_ID_CHUNK_SIZE = 500;
+
+    public static final String IDS_PARAMETER = "ids";
+
+    public static final String KEY_PARAMETER_PREFIX = "keysetValue";
+
+    public static final String SHARED_ALIAS_PREFIX = "sharedAlias";
+
+    private final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private volatile Boolean countableByRoot;
+
+    private volatile LruCache<List<Object>, CriteriaQuery<T>> queryCache = new LruCache<>(DEFAULT_QUERY_CACHE_SIZE);
+
+    private boolean parameterBinding = true;
+
+    private int idChunkSize = DEFAULT_ID_CHUNK_SIZE;
+
+    private Executor executor;
+
+    private boolean parallelCount = true;
+
+    private final Specification<T> idSpecification = (root, query, builder) ->
+            root.get(getIdAttribute().getName()).in(builder.parameter(Collection.class, IDS_PARAMETER));
+
+    private final LruCache<List<Object>, CachedResult> resultCache;
+
+    private final LongAdder resultCacheHits = new LongAdder();
+
+    private final LongAdder resultCacheMisses = new LongAdder();
+
+    private final AtomicLong resultCacheGeneration = new AtomicLong();
+
+    private volatile Set<Class<?>> entityClasses;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private int clearInterval = 0;
+
     public SelectableRepositoryImpl(JpaVendorUtilProxy jpaVendorUtilProxy, EntityManager entityManager, SqlParser sqlParser, Class<T> selectableClass) {
+        this(jpaVendorUtilProxy, entityManager, sqlParser, new SelectableInfo<>(sqlParser, selectableClass));
+    }
+
+    public SelectableRepositoryImpl(JpaVendorUtilProxy jpaVendorUtilProxy, EntityManager entityManager, SqlParser sqlParser, SelectableInfo<T> selectableInfo) {
         this.jpaVendorUtilProxy = jpaVendorUtilProxy;
         this.entityManager = entityManager;
         this.sqlParser = sqlParser;
-        this.selectableInfo = new SelectableInfo(sqlParser, selectableClass);
+        this.selectableInfo = selectableInfo;
+        this.resultCache = selectableInfo.getResultCacheSize() == 0 ? null : new LruCache<>(selectableInfo.getResultCacheSize());
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param fetchSize the number of rows fetched at once by {@link #streamAll(Specification, Sort)}
+     */
+    public void setFetchSize(int fetchSize) {
+        Assert.isTrue(fetchSize > 0, "fetchSize must be greater than 0!");
+        this.fetchSize = fetchSize;
+    }
+
+    public int getClearInterval() {
+        return clearInterval;
+    }
+
+    /**
+     * Rows are projections and not managed by the entity manager, clearing only helps if the selection loads entities along with them.
+     * Pending changes are flushed before clearing.
+     *
+     * @param clearInterval the number of rows streamed until the entity manager is cleared, 0 (default) to never clear it
+     */
+    public void setClearInterval(int clearInterval) {
+        Assert.isTrue(clearInterval >= 0, "clearInterval must be greater or equal than 0!");
+        this.clearInterval = clearInterval;
+    }
+
+    public int getQueryCacheSize() {
+        LruCache<List<Object>, CriteriaQuery<T>> cache = queryCache;
+        return cache == null ? 0 : cache.getMaximumSize();
+    }
+
+    /**
+     * @param queryCacheSize the number of differently shaped queries kept for reuse, 0 to build each query from scratch
+     */
+    public void setQueryCacheSize(int queryCacheSize) {
+        Assert.isTrue(queryCacheSize >= 0, "queryCacheSize must be greater or equal than 0!");
+        this.queryCache = queryCacheSize == 0 ? null : new LruCache<>(queryCacheSize);
+    }
+
+    public boolean isParameterBinding() {
+        return parameterBinding;
+    }
+
+    /**
+     * @param parameterBinding true to bind the values of {@link OperationSpecification}s and keyset keys as query parameters,
+     *                         false to render them as literals into the query
+     */
+    public void setParameterBinding(boolean parameterBinding) {
+        this.parameterBinding = parameterBinding;
+    }
+
+    public int getIdChunkSize() {
+        return idChunkSize;
+    }
+
+    /**
+     * @param idChunkSize the maximum number of ids queried at once by {@link #findAllByIds(Collection)} - must not exceed the parameter limit of the database
+     */
+    public void setIdChunkSize(int idChunkSize) {
+        Assert.isTrue(idChunkSize > 0, "idChunkSize must be greater than 0!");
+        this.idChunkSize = idChunkSize;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor the executor running independent queries in parallel, each with its own entity manager - null to run them one after another
+     *                 with the entity manager of the repository. While the entity manager of the repository is joined to a transaction,
+     *                 queries run on the calling thread anyway, so they see the changes of the transaction.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public boolean isParallelCount() {
+        return parallelCount;
+    }
+
+    /**
+     * @param parallelCount true (default) to start the count of a page along with its rows if pages are loaded on the {@link #getExecutor() executor},
+     *                      it is cancelled if the total can be derived from the rows - false to count on the entity manager of the rows afterwards, if needed
+     */
+    public void setParallelCount(boolean parallelCount) {
+        this.parallelCount = parallelCount;
+    }
+
+    /**
+     * @return true if an executor is set and the entity manager is not joined to a transaction, see {@link #setExecutor(Executor)}
+     */
+    protected boolean isAsync() {
+        return executor != null && !entityManager.isJoinedToTransaction();
+    }
+
+    public long getResultCacheHitCount() {
+        return resultCacheHits.sum();
+    }
+
+    public long getResultCacheMissCount() {
+        return resultCacheMisses.sum();
+    }
+
+    /**
+     * @return the share of results served from the result cache, 0 if nothing was requested yet
+     */
+    public double getResultCacheHitRate() {
+        long hits = resultCacheHits.sum();
+        long requests = hits + resultCacheMisses.sum();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the key of the result or null if it is not cached - only results of {@link OperationSpecification}s are cached, as they are comparable
+     */
+    protected List<Object> getResultCacheKey(String operation, Specification spec, Object request) {
+        return resultCache != null && (spec == null || spec instanceof OperationSpecification) ? Arrays.asList(operation, spec, request) : null;
+    }
+
+    protected <R> R getCachedResult(List<Object> key) {
+        CachedResult cachedResult = resultCache.get(key);
+        Duration timeToLive = selectableInfo.getResultCacheTimeToLive();
+        if (cachedResult != null && timeToLive != null && System.nanoTime() - cachedResult.loadTime > timeToLive.toNanos()) {
+            resultCache.remove(key);
+            cachedResult = null;
+        }
+        if (cachedResult == null) {
+            resultCacheMisses.increment();
+            return null;
+        }
+        resultCacheHits.increment();
+        return (R) cachedResult.value;
+    }
+
+    /**
+     * Caches the result unless cached results were evicted since the given generation - it may be loaded from outdated data then.
+     */
+    protected void putCachedResult(List<Object> key, long generation, Object result) {
+        if (resultCacheGeneration.get() == generation) {
+            resultCache.put(key, new CachedResult(result, System.nanoTime()));
+        }
+    }
+
+    protected <R> R getCachedResult(List<Object> key, Supplier<R> loader) {
+        if (key == null) {
+            return loader.get();
+        }
+        R result = getCachedResult(key);
+        if (result == null) {
+            long generation = resultCacheGeneration.get();
+            result = loader.get();
+            putCachedResult(key, generation, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void evictCachedResults() {
+        resultCacheGeneration.incrementAndGet();
+        if (resultCache != null) {
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * Cached results are evicted if the entity class is - or is related by inheritance to - the root entity or an entity joined by the selectable.
+     */
+    @Override
+    public void evictCachedResults(Class<?> entityClass) {
+        Assert.notNull(entityClass, "entityClass must not be null!");
+        if (resultCache != null && getEntityClasses().stream()
+                .anyMatch(selectedClass -> selectedClass.isAssignableFrom(entityClass) || entityClass.isAssignableFrom(selectedClass))) {
+            evictCachedResults();
+        }
+    }
+
+    /**
+     * @return the root entity class and the entity classes reached by joins and attribute paths of the selectable
+     */
+    protected Set<Class<?>> getEntityClasses() {
+        if (entityClasses == null) {
+            Set<Class<?>> classes = new HashSet<>();
+            classes.add(selectableInfo.getRootClass());
+            for (SelectableInfo.JoinInfo joinInfo : selectableInfo.getJoins()) {
+                addEntityClasses(Operands.asReference(joinInfo.getJoinPath()), classes);
+                addEntityClasses(joinInfo.getOn(), classes);
+            }
+            for (SelectableInfo.FieldInfo fieldInfo : selectableInfo.getFields()) {
+                addEntityClasses(fieldInfo.getSelection(), classes);
+            }
+            addEntityClasses(selectableInfo.getWhere(), classes);
+            addEntityClasses(selectableInfo.getHaving(), classes);
+            entityClasses = Collections.unmodifiableSet(classes);
+        }
+        return entityClasses;
+    }
+
+    protected void addEntityClasses(Object operand, Set<Class<?>> classes) {
+        if (operand instanceof Operands.FieldReference) {
+            try {
+                List<String> attributePath = resolveReference(((Operands.FieldReference) operand).getValue(), 0);
+                ManagedType<?> type = entityManager.getMetamodel().managedType((Class<?>) selectableInfo.getRootClass());
+                for (int i = 0; i < attributePath.size() && type != null; ++i) {
+                    Attribute<?, ?> attribute = type.getAttribute(attributePath.get(i));
+                    if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+                        break;
+                    }
+                    Class<?> javaType = attribute instanceof PluralAttribute ? ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType() : attribute.getJavaType();
+                    type = entityManager.getMetamodel().managedType(javaType);
+                    if (type instanceof EntityType) {
+                        classes.add(javaType);
+                    }
+                }
+            } catch (IllegalArgumentException exc) {
+                // not an attribute of the root - e.g. a reference to another field alias
+            }
+        } else if (operand instanceof Operation) {
+            ((Operation) operand).getOperands().forEach(nested -> addEntityClasses(nested, classes));
+        }
     }
 
     protected List<TupleElement> getAllTupleElements(AbstractQuery<?> query) {
-        List<TupleElement> tupleElements = Operands.getContexts(query);
+        List<TupleElement> tupleElements = new ArrayList<>(Operands.getContexts(query));
         query.getRoots().forEach((Root<?> root) ->
                 root.getModel().getAttributes().forEach((Attribute attribute) -> {
                             if (attribute instanceof SingularAttribute) {
@@ -170,46 +471,387 @@ public class SelectableRepositoryImpl<T> implements SelectableRepository<T> {
     }
 
     protected CriteriaQuery<T> applySort(Root root, CriteriaQuery<T> query, CriteriaBuilder builder, Sort sort) {
+        return applySort(root, query, builder, sort, null);
+    }
+
+    /**
+     * Applies the sort and - if keys are given - restricts the result to the rows after the keys in sort order.
+     * Sort properties are resolved as aliases of the selectable first, then as paths of the root entity.
+     * Sort expressions are only added to the group by if the query is grouped.
+     *
+     * @param keys the sort key values of the last row seen or expressions providing them, one per sort order
+     */
+    protected CriteriaQuery<T> applySort(Root root, CriteriaQuery<T> query, CriteriaBuilder builder, Sort sort, List<?> keys) {
         if (sort == null) {
             return query;
         }
-        List<TupleElement> elements = getAllTupleElements(query);
+        List<TupleElement> elements = Operands.getContexts(query);
         List<Order> orders = new ArrayList<>();
+        List<Expression> orderExpressions = new ArrayList<>();
         Iterator<Sort.Order> sortIterator = sort.iterator();
         List<Expression<?>> groupBys = new ArrayList<>(query.getGroupList());
+        boolean grouped = !groupBys.isEmpty();
         while (sortIterator.hasNext()) {
             Sort.Order sortOrder = sortIterator.next();
-            Expression orderExpression = Operands.findExpression(sortOrder.getProperty(), elements);
-            if (!groupBys.contains(orderExpression)) {
+            Expression orderExpression = Operands.getPath(root, sortOrder.getProperty(), elements);
+            if (grouped && !groupBys.contains(orderExpression) && !isAggregateFunction(orderExpression)) {
                 groupBys.add(orderExpression);
             }
             orders.add(sortOrder.isAscending() ? builder.asc(orderExpression) : builder.desc(orderExpression));
+            orderExpressions.add(orderExpression);
+        }
+        if (keys != null) {
+            applyKeyset(query, builder, sort, orderExpressions, keys);
         }
         query.orderBy(orders);
-        query.groupBy(groupBys);
+        if (grouped) {
+            query.groupBy(groupBys);
+        }
         return query;
     }
 
+    /**
+     * Grouping is required if the query aggregates or rows may repeat, e.g. due to joined collections.
+     * Otherwise each row belongs to one root entity and grouping by all selected fields has no effect - except keeping the database
+     * from reading the rows in index order for sort and limit.
+     */
+    protected boolean isGroupingRequired(CriteriaQuery<?> query) {
+        if (query.getGroupRestriction() != null || !isCountableByRoot()) {
+            return true;
+        }
+        for (Selection<?> selection : Operands.getAllSelections(query.getSelection())) {
+            if (selection instanceof Expression && isAggregateFunction((Expression) selection)) {
+                return true;
+            }
+        }
+        for (Root<?> root : query.getRoots()) {
+            for (Join<?, ?> join : Operands.getAllJoins(root)) {
+                if (join.getAttribute().isCollection()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restricts the query to the rows after the keys. Criteria queries do not support row value comparisons like {@code (k1, k2) > (?, ?)},
+     * so the equivalent {@code k1 > ? OR (k1 = ? AND k2 > ?)} is created - this also allows mixed sort directions.
+     * The restriction goes to HAVING if a sort expression is an aggregate.
+     *
+     * @throws IllegalArgumentException if the type of a key does not match the type of its sort expression, e.g. of a tampered token
+     */
+    protected CriteriaQuery<T> applyKeyset(CriteriaQuery<T> query, CriteriaBuilder builder, Sort sort, List<Expression> orderExpressions, List<?> keys) {
+        Assert.isTrue(keys.size() == orderExpressions.size(), "one key per sort order expected!");
+        Predicate keyset = null;
+        Predicate equalPrefix = null;
+        boolean aggregated = false;
+        Iterator<Sort.Order> sortIterator = sort.iterator();
+        for (int i = 0; i < keys.size(); ++i) {
+            Sort.Order order = sortIterator.next();
+            Expression expression = orderExpressions.get(i);
+            Expression key = keys.get(i) instanceof Expression ? (Expression) keys.get(i) : builder.literal(keys.get(i));
+            Assert.isTrue(isKeyTypeOf(expression.getJavaType(), key.getJavaType()),
+                    String.format("key of type '%s' does not match sort property '%s'", key.getJavaType().getName(), order.getProperty()));
+            aggregated |= isAggregateFunction(expression);
+            Predicate after = order.isAscending() ? builder.greaterThan(expression, key) : builder.lessThan(expression, key);
+            if (equalPrefix != null) {
+                after = builder.and(equalPrefix, after);
+            }
+            keyset = keyset == null ? after : builder.or(keyset, after);
+            Predicate equal = builder.equal(expression, key);
+            equalPrefix = equalPrefix == null ? equal : builder.and(equalPrefix, equal);
+        }
+        if (aggregated) {
+            Predicate having = query.getGroupRestriction();
+            return having == null ? query.having(keyset) : query.having(having, keyset);
+        }
+        Predicate restriction = query.getRestriction();
+        return restriction == null ? query.where(keyset) : query.where(restriction, keyset);
+    }
+
+    /**
+     * Numbers are compared across types by the database, e.g. a key of an int field sorted by a count.
+     */
+    private static boolean isKeyTypeOf(Class<?> expressionType, Class<?> keyType) {
+        if (expressionType == null || expressionType == Object.class) {
+            return true;
+        }
+        Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(expressionType);
+        return type.isAssignableFrom(keyType) || keyType.isAssignableFrom(type) ||
+                (Number.class.isAssignableFrom(type) && Number.class.isAssignableFrom(keyType));
+    }
+
     protected CriteriaQuery<T> createQuery(Specification specification, Sort sort) {
-        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<T> query = builder.createQuery(selectableInfo.getSelectableClass());
-        Root root = query.from(selectableInfo.getRootClass());
-        query = prepareQuery(root, query, builder);
-        query = applySpecification(root, query, builder, specification);
-        query = applySort(root, query, builder, sort);
-        return query;
+        return createQuery(specification, sort, null);
+    }
+
+    protected CriteriaQuery<T> createQuery(Specification specification, Sort sort, List<?> keys) {
+        try (ResolutionContext.Scope scope = ResolutionContext.open()) {
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<T> query = builder.createQuery(selectableInfo.getSelectableClass());
+            Root root = query.from(selectableInfo.getRootClass());
+            query = prepareQuery(root, query, builder);
+            query = applySpecification(root, query, builder, specification);
+            if (!isGroupingRequired(query)) {
+                query.groupBy(Collections.emptyList());
+            }
+            query = applySort(root, query, builder, sort, keys);
+            return query;
+        }
+    }
+
+    /**
+     * Replaces the constant values of an {@link OperationSpecification} by parameters if parameter binding is enabled.
+     */
+    protected Specification parameterize(Specification specification) {
+        return parameterBinding && specification instanceof OperationSpecification ? ((OperationSpecification) specification).parameterize() : specification;
+    }
+
+    protected <Q extends Query> Q bindParameters(Q query, Specification specification) {
+        return specification instanceof OperationSpecification ? ((OperationSpecification<?>) specification).bindParameters(query) : query;
+    }
+
+    /**
+     * Creates the query - if the specification is an {@link OperationSpecification} or null, the criteria query is built once per shape
+     * and cached: with parameter binding, structurally identical specifications only differ in the values bound to the parameters
+     * and share one query, the same applies to the keys.
+     *
+     * @param keys the sort key values of the last row seen, null if not paged by keyset
+     */
+    protected TypedQuery<T> createTypedQuery(Specification specification, Sort sort, List<?> keys) {
+        return createTypedQuery(entityManager, specification, sort, keys);
+    }
+
+    protected boolean isCacheable(Specification specification) {
+        return specification == null || specification instanceof OperationSpecification || specification == idSpecification;
+    }
+
+    /**
+     * @param queryEntityManager the entity manager to create the query with - must belong to the same persistence unit as the one of the repository
+     */
+    protected TypedQuery<T> createTypedQuery(EntityManager queryEntityManager, Specification specification, Sort sort, List<?> keys) {
+        Specification querySpecification = parameterize(specification);
+        boolean bindKeys = parameterBinding && keys != null;
+        List<Class> keyTypes = null;
+        if (bindKeys) {
+            keyTypes = new ArrayList<>();
+            for (Object key : keys) {
+                keyTypes.add(key.getClass());
+            }
+        }
+        LruCache<List<Object>, CriteriaQuery<T>> cache = queryCache;
+        List<Object> cacheKey = null;
+        CriteriaQuery<T> query = null;
+        TypedQuery<T> typedQuery = null;
+        if (cache != null && isCacheable(specification)) {
+            cacheKey = Arrays.asList(querySpecification, sort, bindKeys ? keyTypes : keys);
+            query = cache.get(cacheKey);
+        }
+        if (query == null) {
+            List<?> queryKeys = keys;
+            if (bindKeys) {
+                CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+                List<Expression> keyParameters = new ArrayList<>();
+                for (int i = 0; i < keyTypes.size(); ++i) {
+                    keyParameters.add(builder.parameter(keyTypes.get(i), KEY_PARAMETER_PREFIX + i));
+                }
+                queryKeys = keyParameters;
+            }
+            query = createQuery(querySpecification, sort, queryKeys);
+            if (cacheKey != null) {
+                prepareForSharing(query);
+                // rendering assigns the aliases still missing, e.g. of subqueries - it happens on this thread before the query is shared
+                typedQuery = queryEntityManager.createQuery(query);
+                cache.put(cacheKey, query);
+            }
+        }
+        if (typedQuery == null) {
+            typedQuery = queryEntityManager.createQuery(query);
+        }
+        typedQuery = bindParameters(typedQuery, querySpecification);
+        if (bindKeys) {
+            OperationSpecification.bindParameters(typedQuery, KEY_PARAMETER_PREFIX, keys);
+        }
+        return typedQuery;
+    }
+
+    /**
+     * Cached queries are rendered concurrently and by different entity managers. Rendering assigns generated aliases to roots and joins
+     * without one (e.g. Hibernate on first render), so every root and join gets an explicit alias before the query is shared.
+     */
+    protected void prepareForSharing(CriteriaQuery<?> query) {
+        int index = 0;
+        for (Root<?> root : query.getRoots()) {
+            List<From<?, ?>> froms = new ArrayList<>();
+            froms.add(root);
+            froms.addAll(Operands.getAllJoins(root));
+            for (From<?, ?> from : froms) {
+                if (from.getAlias() == null) {
+                    from.alias(SHARED_ALIAS_PREFIX + index++);
+                }
+            }
+        }
     }
 
     protected TypedQuery createQuery(Specification spec, Pageable pageable) {
-        CriteriaQuery query = createQuery(spec, pageable == null ? null : pageable.getSort());
-        TypedQuery typedQuery = entityManager.createQuery(query);
-        if (pageable != null) {
-            typedQuery.setFirstResult((int) pageable.getOffset());
+        return createQuery(entityManager, spec, pageable);
+    }
+
+    protected TypedQuery createQuery(EntityManager queryEntityManager, Specification spec, Pageable pageable) {
+        boolean keyset = pageable instanceof KeysetRequest;
+        TypedQuery typedQuery = createTypedQuery(queryEntityManager, spec, pageable == null ? null : pageable.getSort(), keyset ? ((KeysetRequest) pageable).getKeys() : null);
+        if (pageable != null && pageable.isPaged()) {
+            // the offset of a keyset request is the logical position of the page, the keyset restriction already skips the previous rows
+            typedQuery.setFirstResult(keyset ? 0 : (int) pageable.getOffset());
             typedQuery.setMaxResults(pageable.getPageSize());
         }
         return typedQuery;
     }
 
+    /**
+     * Resolves a reference of the selectable to attribute names of the root entity - aliases of joins are replaced by their join path.
+     */
+    protected List<String> resolveReference(String reference, int depth) {
+        String[] parts = Operands.getPathParts(reference);
+        List<String> result = new ArrayList<>();
+        int firstIndex = 0;
+        for (SelectableInfo.JoinInfo joinInfo : selectableInfo.getJoins()) {
+            if (depth < selectableInfo.getJoins().size() && parts.length > 1 && parts[0].equals(joinInfo.getAlias())) {
+                result.addAll(resolveReference(joinInfo.getJoinPath(), depth + 1));
+                firstIndex = 1;
+                break;
+            }
+        }
+        result.addAll(Arrays.asList(parts).subList(firstIndex, parts.length));
+        return result;
+    }
+
+    /**
+     * Checks whether the attribute path leads from the root entity over single valued attributes only.
+     */
+    protected boolean isSingleValued(List<String> attributePath) {
+        ManagedType<?> type = entityManager.getMetamodel().managedType((Class<?>) selectableInfo.getRootClass());
+        for (int i = 0; i < attributePath.size(); ++i) {
+            Attribute<?, ?> attribute = type.getAttribute(attributePath.get(i));
+            if (attribute.isCollection()) {
+                return false;
+            }
+            if (i < attributePath.size() - 1) {
+                type = entityManager.getMetamodel().managedType(attribute.getJavaType());
+            }
+        }
+        return true;
+    }
+
+    protected boolean isAggregate(Operand operand) {
+        return operand instanceof Operation &&
+                (((Operation) operand).getOperator() == Operators.COUNT || ((Operation) operand).getOperator() == Operators.COUNT_DISTINCT);
+    }
+
+    /**
+     * Checks whether all field references of the operand - aggregated ones excepted - lead over single valued attributes.
+     */
+    protected boolean isSingleValued(Object operand) {
+        if (operand instanceof Operands.FieldReference) {
+            return isSingleValued(resolveReference(((Operands.FieldReference) operand).getValue(), 0));
+        }
+        if (operand instanceof Operation) {
+            return isAggregate((Operand) operand) || ((Operation) operand).getOperands().stream().allMatch(this::isSingleValued);
+        }
+        return true;
+    }
+
+    protected SingularAttribute<?, ?> getIdAttribute() {
+        EntityType<?> entityType = entityManager.getMetamodel().entity((Class<?>) selectableInfo.getRootClass());
+        for (SingularAttribute<?, ?> attribute : entityType.getSingularAttributes()) {
+            if (attribute.isId()) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    protected boolean isIdField(SelectableInfo.FieldInfo fieldInfo, SingularAttribute<?, ?> idAttribute) {
+        return idAttribute != null && fieldInfo.getSelection() instanceof Operands.FieldReference
+                && resolveReference(((Operands.FieldReference) fieldInfo.getSelection()).getValue(), 0).equals(Collections.singletonList(idAttribute.getName()));
+    }
+
+    /**
+     * @return the field of the selectable selecting the id of the root entity or null if there is none
+     */
+    protected SelectableInfo.FieldInfo getIdField() {
+        SingularAttribute<?, ?> idAttribute = getIdAttribute();
+        for (SelectableInfo.FieldInfo fieldInfo : selectableInfo.getFields()) {
+            if (isIdField(fieldInfo, idAttribute)) {
+                return fieldInfo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The result has one row per root entity if it is grouped by the id of the root and all other grouped fields are single valued attributes of the root.
+     * The size of the result is then the number of distinct root entities, which the database can count without grouping.
+     */
+    protected boolean isCountableByRoot() {
+        if (countableByRoot == null) {
+            boolean groupedById = false;
+            boolean singleValued = selectableInfo.getHaving() == null;
+            try {
+                SingularAttribute<?, ?> idAttribute = getIdAttribute();
+                for (SelectableInfo.FieldInfo fieldInfo : selectableInfo.getFields()) {
+                    Operand selection = fieldInfo.getSelection();
+                    if (isAggregate(selection)) {
+                        continue;
+                    }
+                    groupedById |= isIdField(fieldInfo, idAttribute);
+                    singleValued &= isSingleValued(selection);
+                }
+            } catch (IllegalArgumentException exc) {
+                // not an attribute of the root - e.g. a reference to another field alias
+                singleValued = false;
+            }
+            countableByRoot = groupedById && singleValued;
+        }
+        return countableByRoot;
+    }
+
+    /**
+     * Counts the rows of the selectable without loading them: {@code COUNT(DISTINCT root)} if the result has one row per root entity,
+     * otherwise the grouped query is executed with the grouped expressions as selection only.
+     */
+    protected long executeCount(Specification spec) {
+        return executeCount(entityManager, spec);
+    }
+
+    protected long executeCount(EntityManager queryEntityManager, Specification spec) {
+        Specification countSpecification = parameterize(spec);
+        CriteriaBuilder builder = queryEntityManager.getCriteriaBuilder();
+        CriteriaQuery query = builder.createQuery();
+        Root root = query.from(selectableInfo.getRootClass());
+        try (ResolutionContext.Scope scope = ResolutionContext.open()) {
+            query = prepareQuery(root, query, builder);
+            query = applySpecification(root, query, builder, countSpecification);
+        }
+        List<Expression<?>> groupBys = new ArrayList<>(query.getGroupList());
+        if (query.getGroupRestriction() == null) {
+            if (groupBys.isEmpty()) {
+                // aggregated into a single row
+                return 1;
+            }
+            if (isCountableByRoot()) {
+                query.groupBy(Collections.emptyList());
+                query.select(builder.countDistinct(root));
+                return ((Number) bindParameters(queryEntityManager.createQuery(query), countSpecification).getSingleResult()).longValue();
+            }
+        }
+        if (!groupBys.isEmpty()) {
+            query.multiselect(groupBys.toArray(new Selection[0]));
+        }
+        return bindParameters(queryEntityManager.createQuery(query), countSpecification).getResultList().size();
+    }
+
     @Override
     public Optional<T> findOne(Specification spec) {
         List<T> resultList = findAll(spec);
@@ -219,25 +861,239 @@ public class SelectableRepositoryImpl<T> implements SelectableRepository<T> {
 
     @Override
     public List<T> findAll(Specification spec) {
-        TypedQuery<T> typedQuery = createQuery(spec, (Pageable) null);
-        return typedQuery.getResultList();
+        List<T> resultList = getCachedResult(getResultCacheKey("findAll", spec, null), () -> {
+            TypedQuery<T> typedQuery = createQuery(spec, (Pageable) null);
+            return typedQuery.getResultList();
+        });
+        return new ArrayList<>(resultList);
     }
 
     @Override
     public Page<T> findAll(Specification spec, Pageable pageable) {
-        TypedQuery<T> typedQuery = createQuery(spec, pageable);
-        List<T> resultList = typedQuery.getResultList();
-        return new PageImpl<>(resultList, pageable, resultList.size());
+        return join(findAllAsync(spec, pageable));
+    }
+
+    /**
+     * Without {@link #getExecutor() executor} or within a transaction the page is loaded on the calling thread and the returned future is
+     * already completed. Otherwise it is loaded on the executor with a read-only entity manager - with {@link #isParallelCount()} the count
+     * runs in parallel on its own entity manager.
+     * In any case the total count is only used, and waited for, if it can not be derived from the rows of the page.
+     */
+    @Override
+    public CompletableFuture<Page<T>> findAllAsync(Specification spec, Pageable pageable) {
+        List<Object> key = getResultCacheKey("findPage", spec, pageable);
+        if (key == null) {
+            return loadPage(spec, pageable);
+        }
+        Page<T> page = getCachedResult(key);
+        if (page != null) {
+            return CompletableFuture.completedFuture(copyPage(page));
+        }
+        long generation = resultCacheGeneration.get();
+        return loadPage(spec, pageable).thenApply(loadedPage -> {
+            putCachedResult(key, generation, loadedPage);
+            return copyPage(loadedPage);
+        });
+    }
+
+    /**
+     * Copies a cached page - the rows themselves are shared, see {@link net.seesharpsoft.spring.data.jpa.selectable.ResultCache}.
+     */
+    protected Page<T> copyPage(Page<T> page) {
+        List<T> content = new ArrayList<>(page.getContent());
+        if (page instanceof KeysetPage) {
+            return new KeysetPage<>(content, (KeysetRequest) page.getPageable(), page.getTotalElements(), ((KeysetPage<T>) page).getLastKeys());
+        }
+        return new PageImpl<>(content, page.getPageable(), page.getTotalElements());
+    }
+
+    protected CompletableFuture<Page<T>> loadPage(Specification spec, Pageable pageable) {
+        Pageable pageRequest = pageable == null ? Pageable.unpaged() : pageable;
+        if (!isAsync()) {
+            List<T> resultList = createQuery(spec, pageable).getResultList();
+            // the count is only executed if the total can not be derived from the page itself
+            return CompletableFuture.completedFuture(toKeysetPage(PageableExecutionUtils.getPage(resultList, pageRequest, () -> count(spec))));
+        }
+        if (!parallelCount || pageRequest.isUnpaged()) {
+            return supplyAsync(queryEntityManager -> {
+                List<T> resultList = createQuery(queryEntityManager, spec, pageable).getResultList();
+                return toKeysetPage(PageableExecutionUtils.getPage(resultList, pageRequest, () -> executeCount(queryEntityManager, spec)));
+            });
+        }
+        CompletableFuture<List<T>> content = supplyAsync(queryEntityManager -> createQuery(queryEntityManager, spec, pageable).getResultList());
+        CompletableFuture<Long> total = supplyAsync(queryEntityManager -> executeCount(queryEntityManager, spec));
+        return content.whenComplete((resultList, exc) -> {
+            if (exc != null) {
+                total.cancel(false);
+            }
+        }).thenCompose(resultList -> {
+            boolean[] countNeeded = new boolean[1];
+            Page<T> page = PageableExecutionUtils.getPage(resultList, pageRequest, () -> {
+                countNeeded[0] = true;
+                return 0L;
+            });
+            if (!countNeeded[0]) {
+                // a count not started yet is skipped, a running one is ignored
+                total.cancel(false);
+                return CompletableFuture.completedFuture(toKeysetPage(page));
+            }
+            return total.thenApply(count -> toKeysetPage(PageableExecutionUtils.getPage(resultList, pageRequest, () -> count)));
+        });
+    }
+
+    /**
+     * Turns the page of a {@link KeysetRequest} into a {@link KeysetPage} with the sort key values of its last row - other pages are returned as they are.
+     */
+    protected Page<T> toKeysetPage(Page<T> page) {
+        if (!(page.getPageable() instanceof KeysetRequest)) {
+            return page;
+        }
+        List<T> content = page.getContent();
+        KeysetRequest request = (KeysetRequest) page.getPageable();
+        List<Object> lastKeys = content.isEmpty() ? null : getSortKeys(content.get(content.size() - 1), request.getSort());
+        return new KeysetPage<>(content, request, page.getTotalElements(), lastKeys);
+    }
+
+    /**
+     * Reads the sort key values from the fields of the row.
+     *
+     * @return the values, null if a sort property is not a field of the selectable or a value is null
+     */
+    protected List<Object> getSortKeys(T row, Sort sort) {
+        List<Object> keys = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            SelectableInfo.FieldInfo fieldInfo = selectableInfo.getFields().stream()
+                    .filter(candidate -> candidate.getAlias().equals(order.getProperty()))
+                    .findFirst()
+                    .orElse(null);
+            if (fieldInfo == null) {
+                return null;
+            }
+            Field field = fieldInfo.getField();
+            ReflectionUtils.makeAccessible(field);
+            Object key = ReflectionUtils.getField(field, row);
+            if (key == null) {
+                return null;
+            }
+            keys.add(key);
+        }
+        return keys;
     }
 
     @Override
     public List<T> findAll(Specification spec, Sort sort) {
-        TypedQuery<T> typedQuery = createQuery(spec, PageRequest.of(0, Integer.MAX_VALUE, sort));
+        List<T> resultList = getCachedResult(getResultCacheKey("findAllSorted", spec, sort), () -> {
+            TypedQuery<T> typedQuery = createQuery(spec, PageRequest.of(0, Integer.MAX_VALUE, sort));
+            return typedQuery.getResultList();
+        });
+        return new ArrayList<>(resultList);
+    }
+
+    /**
+     * Streams the rows via the vendor specific cursor support. If a {@link #getClearInterval()} is set, the entity manager is flushed
+     * and cleared every that many rows to release entities loaded along with them - entities of the caller are detached then.
+     */
+    @Override
+    public Stream<T> streamAll(Specification spec, Sort sort) {
+        TypedQuery<T> typedQuery = createTypedQuery(spec, sort, null);
+        Stream<T> stream = jpaVendorUtilProxy.stream(typedQuery, fetchSize);
+        int interval = clearInterval;
+        if (interval > 0) {
+            long[] count = new long[1];
+            stream = stream.peek(row -> {
+                if (++count[0] % interval == 0) {
+                    if (entityManager.isJoinedToTransaction()) {
+                        entityManager.flush();
+                    }
+                    entityManager.clear();
+                }
+            });
+        }
+        return stream;
+    }
+
+    /**
+     * Runs the function with a new read-only entity manager of the persistence unit of the repository.
+     */
+    protected <R> R callWithNewEntityManager(Function<EntityManager, R> function) {
+        EntityManager newEntityManager = jpaVendorUtilProxy.createReadOnlyEntityManager(entityManager.getEntityManagerFactory());
+        try {
+            return function.apply(newEntityManager);
+        } finally {
+            newEntityManager.close();
+        }
+    }
+
+    /**
+     * Runs the function on the {@link #getExecutor() executor} with a new read-only entity manager.
+     */
+    protected <R> CompletableFuture<R> supplyAsync(Function<EntityManager, R> function) {
+        Executor currentExecutor = executor;
+        Assert.state(currentExecutor != null, "no executor set!");
+        return CompletableFuture.supplyAsync(() -> callWithNewEntityManager(function), currentExecutor);
+    }
+
+    protected List<T> findAllByIds(EntityManager queryEntityManager, List<?> ids) {
+        TypedQuery<T> typedQuery = createTypedQuery(queryEntityManager, idSpecification, null, null);
+        typedQuery.setParameter(IDS_PARAMETER, ids);
         return typedQuery.getResultList();
     }
 
+    /**
+     * The ids are queried in chunks of {@link #getIdChunkSize()} - in parallel if an {@link #getExecutor() executor} is set.
+     */
+    @Override
+    public List<T> findAllByIds(Collection<?> ids) {
+        Assert.notNull(ids, "ids must not be null!");
+        SingularAttribute<?, ?> idAttribute = getIdAttribute();
+        SelectableInfo.FieldInfo idField = getIdField();
+        Assert.state(idField != null, "the selectable does not select the id of its root entity!");
+        Class<?> idType = ClassUtils.resolvePrimitiveIfNecessary(idAttribute.getJavaType());
+        List<Object> distinctIds = ids.stream()
+                .map(id -> conversionService.convert(id, idType))
+                .distinct()
+                .collect(Collectors.toList());
+        List<List<Object>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinctIds.size(); i += idChunkSize) {
+            chunks.add(distinctIds.subList(i, Math.min(i + idChunkSize, distinctIds.size())));
+        }
+        List<T> rows = new ArrayList<>();
+        if (!isAsync() || chunks.size() < 2) {
+            chunks.forEach(chunk -> rows.addAll(findAllByIds(entityManager, chunk)));
+        } else {
+            List<CompletableFuture<List<T>>> futures = chunks.stream()
+                    .map(chunk -> supplyAsync(queryEntityManager -> findAllByIds(queryEntityManager, chunk)))
+                    .collect(Collectors.toList());
+            futures.forEach(future -> rows.addAll(join(future)));
+        }
+        Field field = idField.getField();
+        ReflectionUtils.makeAccessible(field);
+        // a root entity may have several rows, e.g. if a collection is joined
+        Map<Object, List<T>> rowsById = new HashMap<>();
+        rows.forEach(row -> rowsById.computeIfAbsent(conversionService.convert(ReflectionUtils.getField(field, row), idType), id -> new ArrayList<>()).add(row));
+        return distinctIds.stream()
+                .map(rowsById::get)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Waits for the result - runtime exceptions of the computation are rethrown as they are.
+     */
+    protected static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exc) {
+            if (exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw exc;
+        }
+    }
+
     @Override
     public long count(Specification spec) {
-        return findAll(spec).size();
+        return getCachedResult(getResultCacheKey("count", spec, null), () -> executeCount(spec));
     }
 }
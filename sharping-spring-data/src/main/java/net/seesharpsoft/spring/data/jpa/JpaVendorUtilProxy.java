@@ -1,7 +1,31 @@
 package net.seesharpsoft.spring.data.jpa;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.Expression;
+import java.util.stream.Stream;
 
 public interface JpaVendorUtilProxy {
     boolean isAggregateFunction(Expression expression);
+
+    /**
+     * Streams the results of the query, fetching the rows in chunks of the given size.
+     * The default materializes the whole result - vendors supporting cursors should override it.
+     * The stream must be closed to release the underlying cursor.
+     */
+    default <T> Stream<T> stream(TypedQuery<T> query, int fetchSize) {
+        return query.getResultList().stream();
+    }
+
+    /**
+     * Creates an entity manager only used for reading, outside of the current transaction.
+     * The default never flushes before queries - vendors supporting read-only sessions should override it.
+     */
+    default EntityManager createReadOnlyEntityManager(EntityManagerFactory entityManagerFactory) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.setFlushMode(FlushModeType.COMMIT);
+        return entityManager;
+    }
 }
@@ -1,30 +1,83 @@
 package net.seesharpsoft.spring.data.jpa;
 
 import net.seesharpsoft.spring.data.jpa.expression.Operation;
+import net.seesharpsoft.spring.data.jpa.expression.Operations;
+import net.seesharpsoft.spring.data.jpa.expression.ResolutionContext;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.Assert;
 
+import javax.persistence.Parameter;
+import javax.persistence.Query;
 import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 public class OperationSpecification<T> implements Specification<T> {
 
+    private static final ConversionService CONVERSION_SERVICE = DefaultConversionService.getSharedInstance();
+
     private Operation operation;
 
+    private List<Object> parameterValues = Collections.emptyList();
+
     public OperationSpecification(Operation operation) {
         Assert.notNull(operation, "operation must not be null!");
         this.operation = operation;
     }
 
-    protected Operation getOperation() {
+    public Operation getOperation() {
         return operation;
     }
 
+    /**
+     * @return the values to bind to the parameters of the operation, empty if not parameterized
+     */
+    public List<Object> getParameterValues() {
+        return parameterValues;
+    }
+
+    /**
+     * Creates a specification rendering the constant values as query parameters instead of literals, see {@link Operations#parameterize(Operation, List)}.
+     * The values must be bound to the query via {@link #bindParameters(Query)}.
+     *
+     * @return the parameterized specification
+     */
+    public OperationSpecification<T> parameterize() {
+        List<Object> values = new ArrayList<>();
+        OperationSpecification<T> result = new OperationSpecification<>(Operations.parameterize(operation, values));
+        result.parameterValues = Collections.unmodifiableList(values);
+        return result;
+    }
+
+    /**
+     * Binds the parameter values to the query created with this specification.
+     */
+    public <Q extends Query> Q bindParameters(Q query) {
+        return bindParameters(query, Operations.PARAMETER_PREFIX, parameterValues);
+    }
+
+    /**
+     * Binds the values to the parameters named prefix0, prefix1, ... - each value is converted to the type of its parameter.
+     */
+    public static <Q extends Query> Q bindParameters(Q query, String prefix, List<?> values) {
+        for (int i = 0; i < values.size(); ++i) {
+            Parameter<?> parameter = query.getParameter(prefix + i);
+            query.setParameter(parameter.getName(), CONVERSION_SERVICE.convert(values.get(i), parameter.getParameterType()));
+        }
+        return query;
+    }
+
     @Override
     public Predicate toPredicate(Root root, CriteriaQuery query, CriteriaBuilder cb) {
-        Expression expression = getOperation().asExpression(root, query, cb, null);
-        Assert.isInstanceOf(Predicate.class, expression);
-        return (Predicate)expression;
+        try (ResolutionContext.Scope scope = ResolutionContext.open()) {
+            Expression expression = getOperation().asExpression(root, query, cb, null);
+            Assert.isInstanceOf(Predicate.class, expression);
+            return (Predicate) expression;
+        }
     }
 
     @Override
@@ -5,6 +5,7 @@ import net.seesharpsoft.spring.data.jpa.expression.Parser;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.Assert;
 
 import java.text.ParseException;
 
@@ -12,8 +13,13 @@ public class SpecificationConverter implements Converter<String, Specification>
 
     private Parser parser;
 
+    public SpecificationConverter(Parser parser) {
+        Assert.notNull(parser, "parser must not be null!");
+        this.parser = parser;
+    }
+
     public SpecificationConverter(Dialect dialect, ConversionService conversionService) {
-        this.parser = new Parser(dialect, conversionService);
+        this(new Parser(dialect, conversionService));
     }
     
     @Override
@@ -0,0 +1,874 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import net.seesharpsoft.spring.data.jpa.expression.OperationCompiler.*;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Columnar evaluation of operations over a batch of objects - referenced fields are extracted once into column arrays
+ * (int[], long[], double[], bitmaps for booleans, Object[] otherwise) and a filter is evaluated into a selection bitmap with one bit per row.
+ * AND, OR and NOT combine bitmaps word by word, comparisons of columns and constants run as loops over the columns - a constant
+ * is compared as a scalar, int columns compared as long or double are widened once and kept as well.
+ * Everything else is evaluated row by row via the {@link OperationCompiler}, but only for rows still selected.
+ * Columns are kept, so a batch can back repeated filtering of e.g. a cached result set. Instances are thread-safe.
+ * Frequently filtered fields can be indexed via {@link #addIndex(String)} - comparisons of an indexed field with a constant
+ * on the top level of a filter narrow the rows to evaluate by binary search before anything else is evaluated.
+ *
+ * @param <T> the type of the rows
+ */
+public class ColumnBatch<T> {
+
+    private final Object[] rows;
+    private final Class<T> entityClass;
+    private final OperationCompiler compiler;
+    private final Map<String, Object> columns = new ConcurrentHashMap<>();
+    private final Map<String, SortedIndex> indexes = new ConcurrentHashMap<>();
+
+    private static final String LONG_COLUMN_SUFFIX = "#long";
+    private static final String DOUBLE_COLUMN_SUFFIX = "#double";
+
+    /**
+     * Row ids sorted by the values of a field - rows with null values are kept separately, they match any comparison.
+     */
+    protected static class SortedIndex {
+        protected final Comparable[] values;
+        protected final int[] rowIds;
+        protected final long[] nullRows;
+
+        protected SortedIndex(Comparable[] values, int[] rowIds, long[] nullRows) {
+            this.values = values;
+            this.rowIds = rowIds;
+            this.nullRows = nullRows;
+        }
+
+        /**
+         * First position whose value is greater than (or equal to, if not exclusive) the constant.
+         */
+        protected int search(Comparable constant, boolean exclusive) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int compareResult = Operators.compareTo(values[middle], constant);
+                if (compareResult < 0 || (exclusive && compareResult == 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * All rows which might match the comparison of the indexed field with the constant.
+         */
+        protected long[] getCandidates(Comparison comparison, Comparable constant) {
+            int from = 0;
+            int to = values.length;
+            if (comparison == null) {
+                from = search(constant, false);
+                to = search(constant, true);
+            } else {
+                switch (comparison) {
+                    case GREATER_THAN:
+                        from = search(constant, true);
+                        break;
+                    case GREATER_THAN_OR_EQUALS:
+                        from = search(constant, false);
+                        break;
+                    case LESS_THAN:
+                        to = search(constant, false);
+                        break;
+                    case LESS_THAN_OR_EQUALS:
+                        to = search(constant, true);
+                        break;
+                    default:
+                        throw new IllegalStateException(comparison.name());
+                }
+            }
+            long[] candidates = nullRows.clone();
+            for (int i = from; i < to; ++i) {
+                candidates[rowIds[i] >>> 6] |= 1L << rowIds[i];
+            }
+            return candidates;
+        }
+    }
+
+    public ColumnBatch(List<T> rows, Class<T> entityClass, OperationCompiler compiler) {
+        Assert.notNull(rows, "rows must not be null!");
+        Assert.notNull(entityClass, "entityClass must not be null!");
+        Assert.notNull(compiler, "compiler must not be null!");
+        this.rows = rows.toArray();
+        this.entityClass = entityClass;
+        this.compiler = compiler;
+    }
+
+    public ColumnBatch(List<T> rows, Class<T> entityClass) {
+        this(rows, entityClass, new OperationCompiler());
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public T get(int index) {
+        return (T) rows[index];
+    }
+
+    /**
+     * Evaluates the operand for all rows.
+     *
+     * @param operand the parsed filter
+     * @return the indices of the matching rows
+     * @throws IllegalArgumentException if a referenced field does not exist in the entity class
+     */
+    public BitSet filter(Operand operand) {
+        return BitSet.valueOf(evaluate(compiler.compile(operand, entityClass)));
+    }
+
+    /**
+     * Evaluates a predicate of {@link OperationCompiler#compilePredicate(Operand, Class)} for all rows without compiling its operand again.
+     *
+     * @param predicate the compiled filter
+     * @return the indices of the matching rows
+     * @throws IllegalArgumentException if the predicate was not compiled by an {@link OperationCompiler}
+     */
+    public BitSet filterCompiled(Predicate<T> predicate) {
+        return BitSet.valueOf(evaluate(getNode(predicate)));
+    }
+
+    /**
+     * Evaluates the operand for all rows.
+     *
+     * @param operand the parsed filter
+     * @return the matching rows in batch order
+     * @throws IllegalArgumentException if a referenced field does not exist in the entity class
+     */
+    public List<T> select(Operand operand) {
+        return select(evaluate(compiler.compile(operand, entityClass)));
+    }
+
+    /**
+     * Evaluates a predicate of {@link OperationCompiler#compilePredicate(Operand, Class)} for all rows without compiling its operand again.
+     *
+     * @param predicate the compiled filter
+     * @return the matching rows in batch order
+     * @throws IllegalArgumentException if the predicate was not compiled by an {@link OperationCompiler}
+     */
+    public List<T> selectCompiled(Predicate<T> predicate) {
+        return select(evaluate(getNode(predicate)));
+    }
+
+    private static Node getNode(Predicate<?> predicate) {
+        Assert.isInstanceOf(NodePredicate.class, predicate, "compiled predicate expected!");
+        return ((NodePredicate<?>) predicate).node;
+    }
+
+    private List<T> select(long[] selection) {
+        List<T> result = new ArrayList<>();
+        for (int word = 0; word < selection.length; ++word) {
+            long bits = selection[word];
+            while (bits != 0) {
+                result.add((T) rows[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a sorted index on the given field - replaces an existing index on the same field.
+     *
+     * @param path the field reference, e.g. "address/city"
+     * @throws IllegalArgumentException if the field does not exist in the entity class or its values are not comparable
+     */
+    public void addIndex(String path) {
+        Node node = compiler.compile(Operands.asReference(path), entityClass);
+        Assert.isInstanceOf(FieldNode.class, node, "field reference expected!");
+        FieldNode field = (FieldNode) node;
+        List<Integer> rowIds = new ArrayList<>();
+        Comparable[] values = new Comparable[rows.length];
+        long[] nullRows = new long[getWordCount(rows.length)];
+        for (int i = 0; i < rows.length; ++i) {
+            Object value = field.get(rows[i]);
+            if (value == null) {
+                nullRows[i >>> 6] |= 1L << i;
+            } else {
+                Assert.isInstanceOf(Comparable.class, value, "comparable values expected!");
+                values[i] = (Comparable) value;
+                rowIds.add(i);
+            }
+        }
+        rowIds.sort((x, y) -> Operators.compareTo(values[x], values[y]));
+        Comparable[] sortedValues = new Comparable[rowIds.size()];
+        int[] sortedRowIds = new int[rowIds.size()];
+        for (int i = 0; i < sortedRowIds.length; ++i) {
+            sortedRowIds[i] = rowIds.get(i);
+            sortedValues[i] = values[sortedRowIds[i]];
+        }
+        indexes.put(field.path, new SortedIndex(sortedValues, sortedRowIds, nullRows));
+    }
+
+    public boolean hasIndex(String path) {
+        return indexes.containsKey(path);
+    }
+
+    protected long[] evaluate(Node node) {
+        long[] all = new long[getWordCount(rows.length)];
+        Arrays.fill(all, -1L);
+        clearTail(all);
+        return evaluate(node, indexes.isEmpty() ? all : narrow(node, all));
+    }
+
+    /**
+     * Narrows the mask by the indexed comparisons among the top level conjuncts of the node - the result is a superset of the matching rows.
+     */
+    protected long[] narrow(Node node, long[] mask) {
+        if (node instanceof And) {
+            return narrow(((And) node).right, narrow(((And) node).left, mask));
+        }
+        Node left;
+        Node right;
+        Comparison comparison;
+        if (node instanceof IntCompare) {
+            left = ((IntCompare) node).left;
+            right = ((IntCompare) node).right;
+            comparison = ((IntCompare) node).comparison;
+        } else if (node instanceof LongCompare) {
+            left = ((LongCompare) node).left;
+            right = ((LongCompare) node).right;
+            comparison = ((LongCompare) node).comparison;
+        } else if (node instanceof DoubleCompare) {
+            left = ((DoubleCompare) node).left;
+            right = ((DoubleCompare) node).right;
+            comparison = ((DoubleCompare) node).comparison;
+        } else if (node instanceof ObjectCompare) {
+            left = ((ObjectCompare) node).left;
+            right = ((ObjectCompare) node).right;
+            comparison = ((ObjectCompare) node).comparison;
+        } else if (node instanceof Equals && !((Equals) node).negate && ((Equals) node).compareKind != Kind.BOOLEAN) {
+            left = ((Equals) node).left;
+            right = ((Equals) node).right;
+            comparison = null;
+        } else {
+            return mask;
+        }
+        if (left instanceof Constant && right instanceof FieldNode) {
+            Node swap = left;
+            left = right;
+            right = swap;
+            comparison = flip(comparison);
+        }
+        if (!(left instanceof FieldNode) || !(right instanceof Constant) || !(((Constant) right).getValue() instanceof Comparable)) {
+            return mask;
+        }
+        if (left.kind == Kind.LONG && (node instanceof DoubleCompare || (node instanceof Equals && ((Equals) node).compareKind == Kind.DOUBLE))) {
+            // long values are compared as doubles - the exact comparison of the index might miss matches
+            return mask;
+        }
+        SortedIndex index = indexes.get(((FieldNode) left).path);
+        if (index == null) {
+            return mask;
+        }
+        try {
+            return and(index.getCandidates(comparison, (Comparable) ((Constant) right).getValue()), mask);
+        } catch (ClassCastException exc) {
+            // constant not comparable with the indexed values - evaluated without index
+            return mask;
+        }
+    }
+
+    private static Comparison flip(Comparison comparison) {
+        if (comparison == null) {
+            return null;
+        }
+        switch (comparison) {
+            case GREATER_THAN:
+                return Comparison.LESS_THAN;
+            case GREATER_THAN_OR_EQUALS:
+                return Comparison.LESS_THAN_OR_EQUALS;
+            case LESS_THAN:
+                return Comparison.GREATER_THAN;
+            default:
+                return Comparison.GREATER_THAN_OR_EQUALS;
+        }
+    }
+
+    private static int getWordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    private void clearTail(long[] bitmap) {
+        if ((rows.length & 63) != 0) {
+            bitmap[bitmap.length - 1] &= (1L << rows.length) - 1;
+        }
+    }
+
+    private static long[] and(long[] bitmap, long[] other) {
+        for (int i = 0; i < bitmap.length; ++i) {
+            bitmap[i] &= other[i];
+        }
+        return bitmap;
+    }
+
+    /**
+     * Evaluates the node into a bitmap - only rows selected in the mask are considered, the result is a subset of the mask.
+     */
+    protected long[] evaluate(Node node, long[] mask) {
+        if (node instanceof And) {
+            long[] left = evaluate(((And) node).left, mask);
+            return and(left, evaluate(((And) node).right, left));
+        }
+        if (node instanceof Or) {
+            long[] left = evaluate(((Or) node).left, mask);
+            long[] remaining = mask.clone();
+            for (int i = 0; i < remaining.length; ++i) {
+                remaining[i] &= ~left[i];
+            }
+            long[] right = evaluate(((Or) node).right, remaining);
+            for (int i = 0; i < left.length; ++i) {
+                left[i] |= right[i];
+            }
+            return left;
+        }
+        if (node instanceof Not) {
+            long[] operand = evaluate(((Not) node).operand, mask);
+            for (int i = 0; i < operand.length; ++i) {
+                operand[i] = mask[i] & ~operand[i];
+            }
+            return operand;
+        }
+        if (node instanceof Constant) {
+            return Boolean.TRUE.equals(((Constant) node).getValue()) ? mask.clone() : new long[mask.length];
+        }
+        if (node instanceof BooleanField) {
+            return and(getBooleanColumn((FieldNode) node).clone(), mask);
+        }
+        long[] result = evaluateComparison(node, mask);
+        return result == null ? evaluateRows(node, mask) : result;
+    }
+
+    /**
+     * Row by row fallback.
+     */
+    protected long[] evaluateRows(Node node, long[] mask) {
+        long[] result = new long[mask.length];
+        for (int word = 0; word < mask.length; ++word) {
+            long bits = mask[word];
+            while (bits != 0) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                if (node.test(rows[(word << 6) + bit])) {
+                    result[word] |= 1L << bit;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isColumnar(Node node) {
+        return node instanceof FieldNode || node instanceof Constant;
+    }
+
+    private long[] evaluateComparison(Node node, long[] mask) {
+        if (node instanceof IntCompare) {
+            IntCompare compare = (IntCompare) node;
+            if (isColumnar(compare.left) && isColumnar(compare.right)) {
+                return and(compareInts(compare.left, compare.right, compare.comparison), mask);
+            }
+        } else if (node instanceof LongCompare) {
+            LongCompare compare = (LongCompare) node;
+            if (isColumnar(compare.left) && isColumnar(compare.right)) {
+                return and(compareLongs(compare.left, compare.right, compare.comparison), mask);
+            }
+        } else if (node instanceof DoubleCompare) {
+            DoubleCompare compare = (DoubleCompare) node;
+            if (isColumnar(compare.left) && isColumnar(compare.right)) {
+                return and(compareDoubles(compare.left, compare.right, compare.comparison), mask);
+            }
+        } else if (node instanceof Equals) {
+            Equals equals = (Equals) node;
+            if (equals.compareKind == Kind.BOOLEAN || (isColumnar(equals.left) && isColumnar(equals.right))) {
+                long[] result = evaluateEquals(equals, mask);
+                if (result != null && equals.negate) {
+                    for (int i = 0; i < result.length; ++i) {
+                        result[i] = mask[i] & ~result[i];
+                    }
+                }
+                return result;
+            }
+        } else if (node instanceof ObjectCompare) {
+            ObjectCompare compare = (ObjectCompare) node;
+            return compareObjects(compare.left, compare.right, compare.comparison, mask);
+        } else if (node instanceof StringMatch) {
+            StringMatch stringMatch = (StringMatch) node;
+            Object[] left = getObjects(stringMatch.left);
+            if (left != null && stringMatch.constant != null) {
+                return matchStrings(left, stringMatch.operator, stringMatch.constant, mask);
+            }
+        }
+        return null;
+    }
+
+    private long[] evaluateEquals(Equals equals, long[] mask) {
+        switch (equals.compareKind) {
+            case INT:
+                return and(compareInts(equals.left, equals.right, null), mask);
+            case LONG:
+                return and(compareLongs(equals.left, equals.right, null), mask);
+            case DOUBLE:
+                return and(compareDoubles(equals.left, equals.right, null), mask);
+            case BOOLEAN:
+                long[] left = evaluate(equals.left, mask);
+                long[] right = evaluate(equals.right, mask);
+                for (int i = 0; i < left.length; ++i) {
+                    left[i] = mask[i] & ~(left[i] ^ right[i]);
+                }
+                return left;
+            default:
+                return compareObjects(equals.left, equals.right, null, mask);
+        }
+    }
+
+    // a comparison of a field with a constant runs as a loop over the column against the scalar value, a null comparison means equality
+
+    private long[] compareInts(Node left, Node right, Comparison comparison) {
+        if (left instanceof FieldNode && right instanceof Constant) {
+            return compareInts(getInts(left), right.getInt(null), comparison);
+        }
+        if (left instanceof Constant && right instanceof FieldNode) {
+            return compareInts(getInts(right), left.getInt(null), flip(comparison));
+        }
+        return comparison == null ? equalInts(getInts(left), getInts(right)) : compareInts(getInts(left), getInts(right), comparison);
+    }
+
+    private long[] compareLongs(Node left, Node right, Comparison comparison) {
+        if (left instanceof FieldNode && right instanceof Constant) {
+            return compareLongs(getLongs(left), right.getLong(null), comparison);
+        }
+        if (left instanceof Constant && right instanceof FieldNode) {
+            return compareLongs(getLongs(right), left.getLong(null), flip(comparison));
+        }
+        return comparison == null ? equalLongs(getLongs(left), getLongs(right)) : compareLongs(getLongs(left), getLongs(right), comparison);
+    }
+
+    private long[] compareDoubles(Node left, Node right, Comparison comparison) {
+        if (left instanceof FieldNode && right instanceof Constant) {
+            return compareDoubles(getDoubles(left), right.getDouble(null), comparison);
+        }
+        if (left instanceof Constant && right instanceof FieldNode) {
+            return compareDoubles(getDoubles(right), left.getDouble(null), flip(comparison));
+        }
+        return comparison == null ? equalDoubles(getDoubles(left), getDoubles(right)) : compareDoubles(getDoubles(left), getDoubles(right), comparison);
+    }
+
+    /**
+     * Null if a side is neither a constant nor an object field.
+     */
+    private long[] compareObjects(Node left, Node right, Comparison comparison, long[] mask) {
+        if (left instanceof FieldNode && right instanceof Constant) {
+            Object[] values = getObjects(left);
+            return values == null ? null : compareObjects(values, ((Constant) right).getValue(), comparison, mask);
+        }
+        if (left instanceof Constant && right instanceof FieldNode) {
+            Object[] values = getObjects(right);
+            return values == null ? null : compareObjects(values, ((Constant) left).getValue(), flip(comparison), mask);
+        }
+        Object[] leftObjects = getObjects(left);
+        Object[] rightObjects = getObjects(right);
+        if (leftObjects == null || rightObjects == null) {
+            return null;
+        }
+        return compareObjects(leftObjects, rightObjects, comparison, mask);
+    }
+
+    private int[] getInts(Node node) {
+        if (node instanceof Constant) {
+            int[] values = new int[rows.length];
+            Arrays.fill(values, node.getInt(null));
+            return values;
+        }
+        FieldNode field = (FieldNode) node;
+        return (int[]) columns.computeIfAbsent(field.path, path -> {
+            int[] column = new int[rows.length];
+            for (int i = 0; i < rows.length; ++i) {
+                column[i] = field.getInt(rows[i]);
+            }
+            return column;
+        });
+    }
+
+    private long[] getLongs(Node node) {
+        if (node instanceof Constant) {
+            long[] values = new long[rows.length];
+            Arrays.fill(values, node.getLong(null));
+            return values;
+        }
+        if (node.kind == Kind.INT) {
+            int[] ints = getInts(node);
+            return (long[]) columns.computeIfAbsent(((FieldNode) node).path + LONG_COLUMN_SUFFIX, path -> {
+                long[] column = new long[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    column[i] = ints[i];
+                }
+                return column;
+            });
+        }
+        FieldNode field = (FieldNode) node;
+        return (long[]) columns.computeIfAbsent(field.path, path -> {
+            long[] column = new long[rows.length];
+            for (int i = 0; i < rows.length; ++i) {
+                column[i] = field.getLong(rows[i]);
+            }
+            return column;
+        });
+    }
+
+    private double[] getDoubles(Node node) {
+        if (node instanceof Constant) {
+            double[] values = new double[rows.length];
+            Arrays.fill(values, node.getDouble(null));
+            return values;
+        }
+        if (node.kind != Kind.DOUBLE) {
+            long[] longs = getLongs(node);
+            return (double[]) columns.computeIfAbsent(((FieldNode) node).path + DOUBLE_COLUMN_SUFFIX, path -> {
+                double[] column = new double[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    column[i] = longs[i];
+                }
+                return column;
+            });
+        }
+        FieldNode field = (FieldNode) node;
+        return (double[]) columns.computeIfAbsent(field.path, path -> {
+            double[] column = new double[rows.length];
+            for (int i = 0; i < rows.length; ++i) {
+                column[i] = field.getDouble(rows[i]);
+            }
+            return column;
+        });
+    }
+
+    private long[] getBooleanColumn(FieldNode field) {
+        return (long[]) columns.computeIfAbsent(field.path, path -> {
+            long[] column = new long[getWordCount(rows.length)];
+            for (int i = 0; i < rows.length; ++i) {
+                if (field.test(rows[i])) {
+                    column[i >>> 6] |= 1L << i;
+                }
+            }
+            return column;
+        });
+    }
+
+    /**
+     * Object values of a constant or an object field, null for other nodes.
+     */
+    private Object[] getObjects(Node node) {
+        if (node instanceof Constant) {
+            Object[] values = new Object[rows.length];
+            Arrays.fill(values, ((Constant) node).getValue());
+            return values;
+        }
+        if (!(node instanceof FieldNode) || node.kind != Kind.OBJECT) {
+            return null;
+        }
+        FieldNode field = (FieldNode) node;
+        return (Object[]) columns.computeIfAbsent(field.path, path -> {
+            Object[] column = new Object[rows.length];
+            for (int i = 0; i < rows.length; ++i) {
+                column[i] = field.get(rows[i]);
+            }
+            return column;
+        });
+    }
+
+    // the loops below set the bit of each row without branching - the shift distance of a long is taken modulo 64
+
+    private static long[] greaterThan(int[] x, int[] y, boolean orEquals) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            if (orEquals) {
+                for (int i = word << 6; i < end; ++i) {
+                    bits |= (x[i] >= y[i] ? 1L : 0L) << i;
+                }
+            } else {
+                for (int i = word << 6; i < end; ++i) {
+                    bits |= (x[i] > y[i] ? 1L : 0L) << i;
+                }
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] equalInts(int[] x, int[] y) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            for (int i = word << 6; i < end; ++i) {
+                bits |= (x[i] == y[i] ? 1L : 0L) << i;
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] compareInts(int[] x, int[] y, Comparison comparison) {
+        switch (comparison) {
+            case GREATER_THAN:
+                return greaterThan(x, y, false);
+            case GREATER_THAN_OR_EQUALS:
+                return greaterThan(x, y, true);
+            case LESS_THAN:
+                return greaterThan(y, x, false);
+            default:
+                return greaterThan(y, x, true);
+        }
+    }
+
+    private static long[] compareInts(int[] x, int y, Comparison comparison) {
+        long low = Integer.MIN_VALUE;
+        long high = Integer.MAX_VALUE;
+        if (comparison == null) {
+            low = y;
+            high = y;
+        } else {
+            switch (comparison) {
+                case GREATER_THAN:
+                    low = y + 1L;
+                    break;
+                case GREATER_THAN_OR_EQUALS:
+                    low = y;
+                    break;
+                case LESS_THAN:
+                    high = y - 1L;
+                    break;
+                default:
+                    high = y;
+                    break;
+            }
+        }
+        return low > high ? new long[getWordCount(x.length)] : inRange(x, (int) low, (int) high);
+    }
+
+    private static long[] inRange(int[] x, int low, int high) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            for (int i = word << 6; i < end; ++i) {
+                bits |= (x[i] >= low & x[i] <= high ? 1L : 0L) << i;
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] greaterThan(long[] x, long[] y, boolean orEquals) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            if (orEquals) {
+                for (int i = word << 6; i < end; ++i) {
+                    bits |= (x[i] >= y[i] ? 1L : 0L) << i;
+                }
+            } else {
+                for (int i = word << 6; i < end; ++i) {
+                    bits |= (x[i] > y[i] ? 1L : 0L) << i;
+                }
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] equalLongs(long[] x, long[] y) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            for (int i = word << 6; i < end; ++i) {
+                bits |= (x[i] == y[i] ? 1L : 0L) << i;
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] compareLongs(long[] x, long[] y, Comparison comparison) {
+        switch (comparison) {
+            case GREATER_THAN:
+                return greaterThan(x, y, false);
+            case GREATER_THAN_OR_EQUALS:
+                return greaterThan(x, y, true);
+            case LESS_THAN:
+                return greaterThan(y, x, false);
+            default:
+                return greaterThan(y, x, true);
+        }
+    }
+
+    private static long[] compareLongs(long[] x, long y, Comparison comparison) {
+        long low = Long.MIN_VALUE;
+        long high = Long.MAX_VALUE;
+        if (comparison == null) {
+            low = y;
+            high = y;
+        } else {
+            switch (comparison) {
+                case GREATER_THAN:
+                    if (y == Long.MAX_VALUE) {
+                        return new long[getWordCount(x.length)];
+                    }
+                    low = y + 1;
+                    break;
+                case GREATER_THAN_OR_EQUALS:
+                    low = y;
+                    break;
+                case LESS_THAN:
+                    if (y == Long.MIN_VALUE) {
+                        return new long[getWordCount(x.length)];
+                    }
+                    high = y - 1;
+                    break;
+                default:
+                    high = y;
+                    break;
+            }
+        }
+        return inRange(x, low, high);
+    }
+
+    private static long[] inRange(long[] x, long low, long high) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            for (int i = word << 6; i < end; ++i) {
+                bits |= (x[i] >= low & x[i] <= high ? 1L : 0L) << i;
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    /**
+     * Doubles are compared like {@link Double#compare(double, double)} - NaN is greater than everything and equal to itself.
+     */
+    private static long[] compareDoubles(double[] x, double[] y, Comparison comparison) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            for (int i = word << 6; i < end; ++i) {
+                bits |= (comparison.matches(Double.compare(x[i], y[i])) ? 1L : 0L) << i;
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] equalDoubles(double[] x, double[] y) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            for (int i = word << 6; i < end; ++i) {
+                bits |= (Double.compare(x[i], y[i]) == 0 ? 1L : 0L) << i;
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static long[] compareDoubles(double[] x, double y, Comparison comparison) {
+        long[] result = new long[getWordCount(x.length)];
+        for (int word = 0; word < result.length; ++word) {
+            int end = Math.min((word + 1) << 6, x.length);
+            long bits = 0;
+            if (comparison == null) {
+                for (int i = word << 6; i < end; ++i) {
+                    bits |= (Double.compare(x[i], y) == 0 ? 1L : 0L) << i;
+                }
+            } else {
+                for (int i = word << 6; i < end; ++i) {
+                    bits |= (comparison.matches(Double.compare(x[i], y)) ? 1L : 0L) << i;
+                }
+            }
+            result[word] = bits;
+        }
+        return result;
+    }
+
+    private static boolean matches(Object x, Object y, Comparison comparison) {
+        return comparison == null ? Objects.equals(x, y) : comparison.matches(Operators.compareTo((Comparable) x, (Comparable) y));
+    }
+
+    private static long[] compareObjects(Object[] x, Object y, Comparison comparison, long[] mask) {
+        long[] result = new long[mask.length];
+        for (int word = 0; word < mask.length; ++word) {
+            long bits = mask[word];
+            while (bits != 0) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (matches(x[i], y, comparison)) {
+                    result[word] |= 1L << i;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    private static long[] compareObjects(Object[] x, Object[] y, Comparison comparison, long[] mask) {
+        long[] result = new long[mask.length];
+        for (int word = 0; word < mask.length; ++word) {
+            long bits = mask[word];
+            while (bits != 0) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (matches(x[i], y[i], comparison)) {
+                    result[word] |= 1L << i;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    private static long[] matchStrings(Object[] values, Operator operator, String constant, long[] mask) {
+        long[] result = new long[mask.length];
+        for (int word = 0; word < mask.length; ++word) {
+            long bits = mask[word];
+            while (bits != 0) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                String value = values[i] == null ? "" : values[i].toString();
+                boolean matches;
+                if (operator == Operators.STARTS_WITH) {
+                    matches = value.startsWith(constant);
+                } else if (operator == Operators.ENDS_WITH) {
+                    matches = value.endsWith(constant);
+                } else {
+                    matches = value.contains(constant);
+                }
+                if (matches) {
+                    result[word] |= 1L << i;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+}
@@ -6,12 +6,14 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
 
 import javax.persistence.TupleElement;
 import javax.persistence.criteria.*;
 import javax.persistence.metamodel.Attribute;
 import java.lang.reflect.Field;
+import java.time.temporal.Temporal;
 import java.util.*;
 
 public class Operands {
@@ -37,6 +39,10 @@ public class Operands {
         return new FieldReference(path);
     }
 
+    public static final Operand asParameter(String name, Object value) {
+        return new Parameter(name, value);
+    }
+
     /**
      * Find an existing join.
      *
@@ -100,6 +106,9 @@ public class Operands {
      */
     public static final Expression findExpression(String nameOrAlias, List<TupleElement> elements) {
         Assert.notNull(elements, "elements must not be null!");
+        if (elements instanceof ResolutionContext) {
+            return ((ResolutionContext) elements).findExpression(nameOrAlias);
+        }
         return elements.stream()
                 .filter(element ->
                         ((element instanceof Expression || element instanceof ExpressionHolder) && nameOrAlias.equalsIgnoreCase(element.getAlias())) ||
@@ -175,6 +184,9 @@ public class Operands {
         if (nameOrAliasOrPath == null || nameOrAliasOrPath.isEmpty()) {
             return from;
         }
+        if (elements instanceof ResolutionContext) {
+            return ((ResolutionContext) elements).getPath(from, nameOrAliasOrPath);
+        }
         return getPath(from, getPathParts(nameOrAliasOrPath), elements);
     }
 
@@ -218,13 +230,29 @@ public class Operands {
         return Collections.singletonList(selection);
     }
 
+    /**
+     * Returns the java type of the operand - memoized if the contexts are a {@link ResolutionContext}.
+     *
+     * @param operand  the operand
+     * @param root     the root
+     * @param contexts available elements
+     * @return the java type or null if unknown
+     */
+    public static Class getJavaType(Operand operand, From root, List<TupleElement> contexts) {
+        if (contexts instanceof ResolutionContext) {
+            return ((ResolutionContext) contexts).getJavaType(root, operand);
+        }
+        return operand.getJavaType(root, contexts);
+    }
+
+    /**
+     * Returns all roots, joins and selections of the query - within {@link ResolutionContext#open()} the list is shared and must not be modified.
+     *
+     * @param query the query
+     * @return the elements of the query
+     */
     public static List<TupleElement> getContexts(AbstractQuery query) {
-        List<TupleElement> elements = new ArrayList<>();
-        Set<Root<?>> roots = getAllRoots(query);
-        elements.addAll(roots);
-        roots.forEach(root -> elements.addAll(getAllJoins(root)));
-        elements.addAll(getAllSelections(query.getSelection()));
-        return elements;
+        return ResolutionContext.of(query);
     }
 
     public static class FieldReference extends Wrapper {
@@ -270,6 +298,59 @@ public class Operands {
         }
     }
 
+    /**
+     * Operand rendered as named query parameter - the value itself is not part of the query and must be bound to it separately.
+     * Parameters are equal if they have the same name and value type, so structurally identical operations create equal queries.
+     */
+    public static class Parameter extends Wrapper {
+
+        private final String name;
+
+        public Parameter(String name, Object value) {
+            super(value);
+            Assert.hasText(name, "name must not be empty!");
+            Assert.isTrue(isBindable(getValue()), "bindable value expected!");
+            this.name = name;
+        }
+
+        /**
+         * Checks whether the value can be bound as parameter - collections, operands, expressions and specifications can not.
+         */
+        public static boolean isBindable(Object value) {
+            return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character ||
+                    value instanceof Enum || value instanceof Date || value instanceof Temporal || value instanceof UUID;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Expression asExpression(From root, AbstractQuery query, CriteriaBuilder criteriaBuilder, Class targetType) {
+            Class type = targetType == null || targetType.equals(Void.TYPE) ? getValue().getClass() : ClassUtils.resolvePrimitiveIfNecessary(targetType);
+            return criteriaBuilder.parameter(type, name);
+        }
+
+        @Override
+        public String toString() {
+            return ":" + name;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Parameter)) {
+                return false;
+            }
+            Parameter otherParameter = (Parameter) other;
+            return name.equals(otherParameter.name) && getValue().getClass().equals(otherParameter.getValue().getClass());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, getValue().getClass());
+        }
+    }
+
     protected static class Wrapper implements Operand {
         private final Object value;
         private final ConversionService conversionService;
@@ -321,7 +402,7 @@ public class Operands {
                 return this.<Expression>getValue().getJavaType();
             }
             if (this.getValue() instanceof Operand) {
-                return this.<Operand>getValue().getJavaType(root, contexts);
+                return Operands.getJavaType(this.<Operand>getValue(), root, contexts);
             }
             return null;
         }
@@ -0,0 +1,985 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compiles operations into reusable in-memory evaluators for a given entity class.
+ * Field references are resolved once via method handles - public getters are bound as lambdas - comparisons and arithmetic are specialized by operand type.
+ * Constants compared to fields are converted to the field type upfront, similar to the criteria API.
+ */
+public class OperationCompiler {
+
+    /**
+     * Value kind of a compiled node - all kinds except OBJECT are never null.
+     */
+    protected enum Kind {
+        INT,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        OBJECT
+    }
+
+    protected enum Comparison {
+        GREATER_THAN,
+        GREATER_THAN_OR_EQUALS,
+        LESS_THAN,
+        LESS_THAN_OR_EQUALS;
+
+        public boolean matches(int compareResult) {
+            switch (this) {
+                case GREATER_THAN:
+                    return compareResult > 0;
+                case GREATER_THAN_OR_EQUALS:
+                    return compareResult >= 0;
+                case LESS_THAN:
+                    return compareResult < 0;
+                case LESS_THAN_OR_EQUALS:
+                    return compareResult <= 0;
+                default:
+                    throw new IllegalStateException(this.name());
+            }
+        }
+    }
+
+    protected static Kind getTypeKind(Class type) {
+        if (type == int.class) {
+            return Kind.INT;
+        }
+        if (type == long.class) {
+            return Kind.LONG;
+        }
+        if (type == double.class) {
+            return Kind.DOUBLE;
+        }
+        if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        }
+        return Kind.OBJECT;
+    }
+
+    private static Kind getConstantKind(Object value) {
+        if (value instanceof Integer) {
+            return Kind.INT;
+        }
+        if (value instanceof Long) {
+            return Kind.LONG;
+        }
+        if (value instanceof Double) {
+            return Kind.DOUBLE;
+        }
+        if (value instanceof Boolean) {
+            return Kind.BOOLEAN;
+        }
+        return Kind.OBJECT;
+    }
+
+    private static boolean isNumeric(Kind kind) {
+        return kind == Kind.INT || kind == Kind.LONG || kind == Kind.DOUBLE;
+    }
+
+    private static Kind widen(Kind first, Kind second) {
+        if (first == Kind.DOUBLE || second == Kind.DOUBLE) {
+            return Kind.DOUBLE;
+        }
+        if (first == Kind.LONG || second == Kind.LONG) {
+            return Kind.LONG;
+        }
+        return Kind.INT;
+    }
+
+    private static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new IllegalStateException(throwable);
+    }
+
+    /**
+     * A compiled operand. The primitive accessors are only called if the kind of the node allows it.
+     */
+    protected abstract static class Node {
+        protected final Kind kind;
+        protected final Class javaType;
+
+        protected Node(Kind kind, Class javaType) {
+            this.kind = kind;
+            this.javaType = javaType;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public Class getJavaType() {
+            return javaType;
+        }
+
+        public abstract Object get(Object entity);
+
+        public int getInt(Object entity) {
+            return ((Number) get(entity)).intValue();
+        }
+
+        public long getLong(Object entity) {
+            return kind == Kind.INT ? getInt(entity) : ((Number) get(entity)).longValue();
+        }
+
+        public double getDouble(Object entity) {
+            switch (kind) {
+                case INT:
+                    return getInt(entity);
+                case LONG:
+                    return getLong(entity);
+                default:
+                    return ((Number) get(entity)).doubleValue();
+            }
+        }
+
+        public boolean test(Object entity) {
+            return Boolean.TRUE.equals(get(entity));
+        }
+    }
+
+    protected static class Constant extends Node {
+        protected final Object value;
+
+        protected Constant(Object value) {
+            super(getConstantKind(value), value == null ? null : value.getClass());
+            this.value = value;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            return value;
+        }
+
+        @Override
+        public int getInt(Object entity) {
+            return (Integer) value;
+        }
+
+        @Override
+        public long getLong(Object entity) {
+            return ((Number) value).longValue();
+        }
+
+        @Override
+        public double getDouble(Object entity) {
+            return ((Number) value).doubleValue();
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return Boolean.TRUE.equals(value);
+        }
+    }
+
+    /**
+     * Access of a field along its path.
+     */
+    protected abstract static class FieldNode extends Node {
+        protected final String path;
+
+        protected FieldNode(Kind kind, Class javaType, String path) {
+            super(kind, javaType);
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    protected static class IntField extends FieldNode {
+        protected final ToIntFunction getter;
+
+        protected IntField(String path, ToIntFunction getter) {
+            super(Kind.INT, Integer.class, path);
+            this.getter = getter;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            return getter.applyAsInt(entity);
+        }
+
+        @Override
+        public int getInt(Object entity) {
+            return getter.applyAsInt(entity);
+        }
+    }
+
+    protected static class LongField extends FieldNode {
+        protected final ToLongFunction getter;
+
+        protected LongField(String path, ToLongFunction getter) {
+            super(Kind.LONG, Long.class, path);
+            this.getter = getter;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            return getter.applyAsLong(entity);
+        }
+
+        @Override
+        public long getLong(Object entity) {
+            return getter.applyAsLong(entity);
+        }
+    }
+
+    protected static class DoubleField extends FieldNode {
+        protected final ToDoubleFunction getter;
+
+        protected DoubleField(String path, ToDoubleFunction getter) {
+            super(Kind.DOUBLE, Double.class, path);
+            this.getter = getter;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            return getter.applyAsDouble(entity);
+        }
+
+        @Override
+        public double getDouble(Object entity) {
+            return getter.applyAsDouble(entity);
+        }
+    }
+
+    protected static class BooleanField extends FieldNode {
+        protected final Predicate getter;
+
+        protected BooleanField(String path, Predicate getter) {
+            super(Kind.BOOLEAN, Boolean.class, path);
+            this.getter = getter;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            return getter.test(entity);
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return getter.test(entity);
+        }
+    }
+
+    /**
+     * Field access along a path, null if any object on the path is null.
+     */
+    protected static class ObjectField extends FieldNode {
+        protected final Function[] getters;
+
+        protected ObjectField(String path, Function[] getters, Class type) {
+            super(Kind.OBJECT, type, path);
+            this.getters = getters;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            Object current = entity;
+            for (Function getter : getters) {
+                if (current == null) {
+                    return null;
+                }
+                current = getter.apply(current);
+            }
+            return current;
+        }
+    }
+
+    protected abstract static class BooleanNode extends Node {
+        protected BooleanNode() {
+            super(Kind.BOOLEAN, Boolean.class);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            return test(entity);
+        }
+
+        @Override
+        public abstract boolean test(Object entity);
+    }
+
+    protected static class And extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+
+        protected And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return left.test(entity) && right.test(entity);
+        }
+    }
+
+    protected static class Or extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+
+        protected Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return left.test(entity) || right.test(entity);
+        }
+    }
+
+    protected static class Not extends BooleanNode {
+        protected final Node operand;
+
+        protected Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return !operand.test(entity);
+        }
+    }
+
+    protected static class Equals extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+        protected final Kind compareKind;
+        protected final boolean negate;
+
+        protected Equals(Node left, Node right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.compareKind = isNumeric(left.kind) && isNumeric(right.kind) ? widen(left.kind, right.kind) :
+                    (left.kind == Kind.BOOLEAN && right.kind == Kind.BOOLEAN ? Kind.BOOLEAN : Kind.OBJECT);
+            this.negate = negate;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            boolean result;
+            switch (compareKind) {
+                case INT:
+                    result = left.getInt(entity) == right.getInt(entity);
+                    break;
+                case LONG:
+                    result = left.getLong(entity) == right.getLong(entity);
+                    break;
+                case DOUBLE:
+                    result = Double.compare(left.getDouble(entity), right.getDouble(entity)) == 0;
+                    break;
+                case BOOLEAN:
+                    result = left.test(entity) == right.test(entity);
+                    break;
+                default:
+                    result = Objects.equals(left.get(entity), right.get(entity));
+                    break;
+            }
+            return result != negate;
+        }
+    }
+
+    protected static class IntCompare extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+        protected final Comparison comparison;
+
+        protected IntCompare(Node left, Node right, Comparison comparison) {
+            this.left = left;
+            this.right = right;
+            this.comparison = comparison;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return comparison.matches(Integer.compare(left.getInt(entity), right.getInt(entity)));
+        }
+    }
+
+    protected static class LongCompare extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+        protected final Comparison comparison;
+
+        protected LongCompare(Node left, Node right, Comparison comparison) {
+            this.left = left;
+            this.right = right;
+            this.comparison = comparison;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return comparison.matches(Long.compare(left.getLong(entity), right.getLong(entity)));
+        }
+    }
+
+    protected static class DoubleCompare extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+        protected final Comparison comparison;
+
+        protected DoubleCompare(Node left, Node right, Comparison comparison) {
+            this.left = left;
+            this.right = right;
+            this.comparison = comparison;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return comparison.matches(Double.compare(left.getDouble(entity), right.getDouble(entity)));
+        }
+    }
+
+    /**
+     * Comparison with the semantics of {@link Operators#compareTo(Comparable, Comparable)}, null is neither greater nor less.
+     */
+    protected static class ObjectCompare extends BooleanNode {
+        protected final Node left;
+        protected final Node right;
+        protected final Comparison comparison;
+
+        protected ObjectCompare(Node left, Node right, Comparison comparison) {
+            this.left = left;
+            this.right = right;
+            this.comparison = comparison;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            return comparison.matches(Operators.compareTo((Comparable) left.get(entity), (Comparable) right.get(entity)));
+        }
+    }
+
+    /**
+     * String matching with the semantics of {@link Operators.LikeOperatorBase}.
+     */
+    protected static class StringMatch extends BooleanNode {
+        protected final Operator operator;
+        protected final Node left;
+        protected final Node right;
+        protected final String constant;
+
+        protected StringMatch(Operator operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.constant = right instanceof Constant ? asString(((Constant) right).getValue()) : null;
+        }
+
+        private static String asString(Object value) {
+            return value == null ? "" : value.toString();
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            String leftValue = asString(left.get(entity));
+            String rightValue = constant == null ? asString(right.get(entity)) : constant;
+            if (operator == Operators.STARTS_WITH) {
+                return leftValue.startsWith(rightValue);
+            }
+            if (operator == Operators.ENDS_WITH) {
+                return leftValue.endsWith(rightValue);
+            }
+            return leftValue.contains(rightValue);
+        }
+    }
+
+    /**
+     * Primitive arithmetic with the results of {@link Operators.Numerical} - calculated as long for integral operands, otherwise as double.
+     * The result has the kind of the left operand, an ArithmeticException is thrown on overflow or if it doesn't fit exactly.
+     */
+    protected static class Arithmetic extends Node {
+        protected final Operator operator;
+        protected final Node left;
+        protected final Node right;
+        protected final boolean integral;
+
+        protected Arithmetic(Operator operator, Node left, Node right) {
+            super(left.kind, left.javaType);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.integral = left.kind != Kind.DOUBLE && right.kind != Kind.DOUBLE;
+        }
+
+        public static long calculate(Operator operator, long x, long y) {
+            if (operator == Operators.ADD) {
+                return Math.addExact(x, y);
+            }
+            if (operator == Operators.SUB) {
+                return Math.subtractExact(x, y);
+            }
+            if (operator == Operators.MUL) {
+                return Math.multiplyExact(x, y);
+            }
+            if (operator == Operators.DIV) {
+                return Operators.Numerical.divideExact(x, y);
+            }
+            return x % y;
+        }
+
+        public static double calculate(Operator operator, double x, double y) {
+            if (operator == Operators.ADD) {
+                return x + y;
+            }
+            if (operator == Operators.SUB) {
+                return x - y;
+            }
+            if (operator == Operators.MUL) {
+                return x * y;
+            }
+            if (operator == Operators.DIV) {
+                return Operators.Numerical.divide(x, y);
+            }
+            return Operators.Numerical.remainder(x, y);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            switch (kind) {
+                case INT:
+                    return getInt(entity);
+                case LONG:
+                    return getLong(entity);
+                default:
+                    return getDouble(entity);
+            }
+        }
+
+        private long calculateLong(Object entity) {
+            if (integral) {
+                return calculate(operator, left.getLong(entity), right.getLong(entity));
+            }
+            return Operators.Numerical.toLongExact(calculate(operator, left.getDouble(entity), right.getDouble(entity)));
+        }
+
+        @Override
+        public int getInt(Object entity) {
+            return Math.toIntExact(calculateLong(entity));
+        }
+
+        @Override
+        public long getLong(Object entity) {
+            return kind == Kind.INT ? getInt(entity) : calculateLong(entity);
+        }
+
+        @Override
+        public double getDouble(Object entity) {
+            if (kind == Kind.DOUBLE) {
+                return calculate(operator, left.getDouble(entity), right.getDouble(entity));
+            }
+            return getLong(entity);
+        }
+    }
+
+    /**
+     * If-else with the condition semantics of {@link Operators.IfElseOperator}.
+     */
+    protected static class IfElse extends Node {
+        protected final Node condition;
+        protected final Node ifCase;
+        protected final Node elseCase;
+
+        protected IfElse(Node condition, Node ifCase, Node elseCase) {
+            super(Kind.OBJECT, Objects.equals(ifCase.javaType, elseCase.javaType) ? ifCase.javaType : null);
+            this.condition = condition;
+            this.ifCase = ifCase;
+            this.elseCase = elseCase;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            boolean ifConditionHit;
+            if (condition.kind == Kind.BOOLEAN) {
+                ifConditionHit = condition.test(entity);
+            } else {
+                Object conditionResult = condition.get(entity);
+                ifConditionHit = false;
+                if (conditionResult instanceof Boolean) {
+                    ifConditionHit = (Boolean) conditionResult;
+                } else if (conditionResult instanceof String) {
+                    ifConditionHit = Boolean.parseBoolean((String) conditionResult);
+                } else if (conditionResult instanceof Number) {
+                    ifConditionHit = conditionResult.equals(0);
+                }
+            }
+            return ifConditionHit ? ifCase.get(entity) : elseCase.get(entity);
+        }
+    }
+
+    /**
+     * Fallback for operators without specialization - evaluates the operator with the values of the operands.
+     */
+    protected static class Generic extends Node {
+        protected final Operator operator;
+        protected final Node[] operands;
+
+        protected Generic(Operator operator, Node[] operands) {
+            super(Kind.OBJECT, null);
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        @Override
+        public Object get(Object entity) {
+            Object[] values = new Object[operands.length];
+            for (int i = 0; i < operands.length; ++i) {
+                values[i] = operands[i].get(entity);
+            }
+            return operator.evaluate(values);
+        }
+    }
+
+    private final ConversionService conversionService;
+
+    private final Map<Class, Map<String, Node>> fieldNodes = new ConcurrentHashMap<>();
+
+    public OperationCompiler(ConversionService conversionService) {
+        Assert.notNull(conversionService, "conversionService must not be null!");
+        this.conversionService = conversionService;
+    }
+
+    public OperationCompiler() {
+        this(DefaultConversionService.getSharedInstance());
+    }
+
+    public ConversionService getConversionService() {
+        return conversionService;
+    }
+
+    /**
+     * Compiles the operand into a predicate - a result other than {@link Boolean#TRUE} does not match.
+     *
+     * @param operand     the parsed operand
+     * @param entityClass the class of the tested objects
+     * @param <T>         the entity type
+     * @return a reusable, thread-safe predicate
+     * @throws IllegalArgumentException if a referenced field does not exist in the entity class
+     */
+    public <T> Predicate<T> compilePredicate(Operand operand, Class<T> entityClass) {
+        return new NodePredicate<>(compile(operand, entityClass));
+    }
+
+    /**
+     * Predicate testing a compiled node - the node is kept, so a {@link ColumnBatch} can evaluate it without compiling the operand again.
+     */
+    protected static class NodePredicate<T> implements Predicate<T> {
+        protected final Node node;
+
+        protected NodePredicate(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean test(T entity) {
+            return node.test(entity);
+        }
+    }
+
+    /**
+     * Compiles the operand into a function.
+     *
+     * @param operand     the parsed operand
+     * @param entityClass the class of the objects to evaluate the operand for
+     * @param <T>         the entity type
+     * @param <R>         the result type
+     * @return a reusable, thread-safe function
+     * @throws IllegalArgumentException if a referenced field does not exist in the entity class
+     */
+    public <T, R> Function<T, R> compileFunction(Operand operand, Class<T> entityClass) {
+        Node node = compile(operand, entityClass);
+        return entity -> (R) node.get(entity);
+    }
+
+    protected Node compile(Object operand, Class entityClass) {
+        Assert.notNull(entityClass, "entityClass must not be null!");
+        if (operand instanceof Operands.FieldReference) {
+            return getFieldNode(entityClass, ((Operands.FieldReference) operand).getValue());
+        }
+        if (operand instanceof Operation) {
+            return compileOperation((Operation) operand, entityClass);
+        }
+        if (operand instanceof Operands.Wrapper) {
+            return compile(((Operands.Wrapper) operand).getValue(), entityClass);
+        }
+        if (operand instanceof Operand) {
+            throw new IllegalArgumentException(String.format("operand '%s' is not supported for in-memory evaluation", operand));
+        }
+        return new Constant(operand);
+    }
+
+    /**
+     * Whether a getter can be bound directly via {@link LambdaMetafactory} - it must be public and visible from this class loader.
+     */
+    private static boolean isDirectlyAccessible(Method method) {
+        if (!Modifier.isPublic(method.getModifiers())) {
+            return false;
+        }
+        for (Class type = method.getDeclaringClass(); type != null; type = type.getEnclosingClass()) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+        }
+        ClassLoader classLoader = OperationCompiler.class.getClassLoader();
+        return ClassUtils.isVisible(method.getDeclaringClass(), classLoader) && ClassUtils.isVisible(method.getReturnType(), classLoader);
+    }
+
+    private static <F> F createFunction(MethodHandle getter, boolean direct, Class<F> functionType, String functionName, Class returnType) {
+        if (!direct) {
+            return null;
+        }
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(MethodHandles.lookup(), functionName, MethodType.methodType(functionType),
+                    MethodType.methodType(returnType, Object.class), getter, getter.type());
+            return (F) callSite.getTarget().invoke();
+        } catch (Throwable throwable) {
+            // method handle fallback
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the getter method or the field of the given name.
+     *
+     * @param type the declaring type
+     * @param name the property name
+     * @return the node accessing the property
+     * @throws IllegalArgumentException if the property does not exist
+     */
+    protected FieldNode createFieldNode(Class type, String name) {
+        MethodHandle getter;
+        boolean direct = false;
+        try {
+            PropertyDescriptor propertyDescriptor = BeanUtils.getPropertyDescriptor(type, name);
+            Method readMethod = propertyDescriptor == null ? null : propertyDescriptor.getReadMethod();
+            if (readMethod != null) {
+                direct = isDirectlyAccessible(readMethod);
+                ReflectionUtils.makeAccessible(readMethod);
+                getter = MethodHandles.lookup().unreflect(readMethod);
+            } else {
+                Field field = ReflectionUtils.findField(type, name);
+                if (field == null) {
+                    throw new IllegalArgumentException(String.format("'%s' is not a field of %s", name, type.getName()));
+                }
+                ReflectionUtils.makeAccessible(field);
+                getter = MethodHandles.lookup().unreflectGetter(field);
+            }
+        } catch (IllegalAccessException exc) {
+            throw new IllegalArgumentException(String.format("'%s' of %s is not accessible", name, type.getName()), exc);
+        }
+
+        Class fieldType = getter.type().returnType();
+        switch (getTypeKind(fieldType)) {
+            case INT: {
+                ToIntFunction function = createFunction(getter, direct, ToIntFunction.class, "applyAsInt", int.class);
+                if (function == null) {
+                    MethodHandle handle = getter.asType(MethodType.methodType(int.class, Object.class));
+                    function = entity -> {
+                        try {
+                            return (int) handle.invokeExact(entity);
+                        } catch (Throwable throwable) {
+                            throw rethrow(throwable);
+                        }
+                    };
+                }
+                return new IntField(name, function);
+            }
+            case LONG: {
+                ToLongFunction function = createFunction(getter, direct, ToLongFunction.class, "applyAsLong", long.class);
+                if (function == null) {
+                    MethodHandle handle = getter.asType(MethodType.methodType(long.class, Object.class));
+                    function = entity -> {
+                        try {
+                            return (long) handle.invokeExact(entity);
+                        } catch (Throwable throwable) {
+                            throw rethrow(throwable);
+                        }
+                    };
+                }
+                return new LongField(name, function);
+            }
+            case DOUBLE: {
+                ToDoubleFunction function = createFunction(getter, direct, ToDoubleFunction.class, "applyAsDouble", double.class);
+                if (function == null) {
+                    MethodHandle handle = getter.asType(MethodType.methodType(double.class, Object.class));
+                    function = entity -> {
+                        try {
+                            return (double) handle.invokeExact(entity);
+                        } catch (Throwable throwable) {
+                            throw rethrow(throwable);
+                        }
+                    };
+                }
+                return new DoubleField(name, function);
+            }
+            case BOOLEAN: {
+                Predicate function = createFunction(getter, direct, Predicate.class, "test", boolean.class);
+                if (function == null) {
+                    MethodHandle handle = getter.asType(MethodType.methodType(boolean.class, Object.class));
+                    function = entity -> {
+                        try {
+                            return (boolean) handle.invokeExact(entity);
+                        } catch (Throwable throwable) {
+                            throw rethrow(throwable);
+                        }
+                    };
+                }
+                return new BooleanField(name, function);
+            }
+            default:
+                return new ObjectField(name, new Function[]{createObjectFunction(getter, direct)}, ClassUtils.resolvePrimitiveIfNecessary(fieldType));
+        }
+    }
+
+    private static Function createObjectFunction(MethodHandle getter, boolean direct) {
+        Function function = createFunction(getter, direct, Function.class, "apply", Object.class);
+        if (function == null) {
+            MethodHandle handle = getter.asType(MethodType.methodType(Object.class, Object.class));
+            function = entity -> {
+                try {
+                    return (Object) handle.invokeExact(entity);
+                } catch (Throwable throwable) {
+                    throw rethrow(throwable);
+                }
+            };
+        }
+        return function;
+    }
+
+    /**
+     * Returns the node accessing the field - field nodes are resolved once per entity class and path and shared by all compiled operands.
+     */
+    protected Node getFieldNode(Class entityClass, String path) {
+        return fieldNodes.computeIfAbsent(entityClass, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(path, key -> compileFieldReference(entityClass, key));
+    }
+
+    protected Node compileFieldReference(Class entityClass, String path) {
+        String[] parts = Operands.getPathParts(path);
+        if (parts.length == 1) {
+            return createFieldNode(entityClass, parts[0]);
+        }
+        Function[] getters = new Function[parts.length];
+        Class type = entityClass;
+        for (int i = 0; i < parts.length; ++i) {
+            FieldNode node = createFieldNode(type, parts[i]);
+            getters[i] = node instanceof ObjectField ? ((ObjectField) node).getters[0] : node::get;
+            type = node.javaType;
+        }
+        return new ObjectField(path, getters, type);
+    }
+
+    /**
+     * Converts a constant to the type of the other node, e.g. a number literal compared to a long field.
+     */
+    protected Node coerce(Node node, Node other) {
+        if (!(node instanceof Constant) || other instanceof Constant || other.javaType == null) {
+            return node;
+        }
+        Object value = ((Constant) node).getValue();
+        if (value == null || other.javaType.isInstance(value) || !conversionService.canConvert(value.getClass(), other.javaType)) {
+            return node;
+        }
+        return new Constant(conversionService.convert(value, other.javaType));
+    }
+
+    protected Node createCompare(Node left, Node right, Comparison comparison) {
+        if (!isNumeric(left.kind) || !isNumeric(right.kind)) {
+            return new ObjectCompare(left, right, comparison);
+        }
+        switch (widen(left.kind, right.kind)) {
+            case INT:
+                return new IntCompare(left, right, comparison);
+            case LONG:
+                return new LongCompare(left, right, comparison);
+            default:
+                return new DoubleCompare(left, right, comparison);
+        }
+    }
+
+    protected Node compileOperation(Operation operation, Class entityClass) {
+        Operator operator = operation.getOperator();
+        List operands = operation.getOperands();
+        Node[] nodes = new Node[operands.size()];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = compile(operands.get(i), entityClass);
+        }
+        if (nodes.length == 2) {
+            Node left = coerce(nodes[0], nodes[1]);
+            Node right = coerce(nodes[1], nodes[0]);
+            if (operator == Operators.AND) {
+                return new And(left, right);
+            }
+            if (operator == Operators.OR) {
+                return new Or(left, right);
+            }
+            if (operator == Operators.EQUALS || operator == Operators.NOT_EQUALS) {
+                return new Equals(left, right, operator == Operators.NOT_EQUALS);
+            }
+            if (operator == Operators.GREATER_THAN) {
+                return createCompare(left, right, Comparison.GREATER_THAN);
+            }
+            if (operator == Operators.GREATER_THAN_OR_EQUALS) {
+                return createCompare(left, right, Comparison.GREATER_THAN_OR_EQUALS);
+            }
+            if (operator == Operators.LESS_THAN) {
+                return createCompare(left, right, Comparison.LESS_THAN);
+            }
+            if (operator == Operators.LESS_THAN_OR_EQUALS) {
+                return createCompare(left, right, Comparison.LESS_THAN_OR_EQUALS);
+            }
+            if (operator == Operators.STARTS_WITH || operator == Operators.ENDS_WITH || operator == Operators.IS_SUBSTRING) {
+                return new StringMatch(operator, left, right);
+            }
+            if (operator == Operators.AS) {
+                return left;
+            }
+            if (operator instanceof Operators.Numerical && isNumeric(left.kind) && isNumeric(right.kind)) {
+                return new Arithmetic(operator, left, right);
+            }
+        } else if (nodes.length == 1 && operator == Operators.NOT) {
+            return new Not(nodes[0]);
+        } else if (nodes.length == 3 && operator == Operators.IF) {
+            return new IfElse(nodes[0], nodes[1], nodes[2]);
+        }
+        return new Generic(operator, nodes);
+    }
+}
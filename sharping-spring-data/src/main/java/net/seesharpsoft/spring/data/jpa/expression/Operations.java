@@ -54,6 +54,51 @@ public class Operations {
 
     public static Operation ifElse(Object condition, Object ifCase, Object elseCase) { return new Tertiary(Operators.IF, condition, ifCase, elseCase); }
 
+    public static final String PARAMETER_PREFIX = "operandValue";
+
+    /**
+     * Creates a copy of the operation with its constant values replaced by {@link Operands.Parameter}s named {@value #PARAMETER_PREFIX}0, {@value #PARAMETER_PREFIX}1, ...
+     * Copies of structurally identical operations are equal regardless of the values.
+     * Values an operator uses as they are - like patterns and aliases - stay constants, as do the operands of unknown operation types.
+     *
+     * @param operation the operation
+     * @param values the list the replaced values are added to in order of the parameter names
+     * @return the parameterized copy
+     */
+    public static Operation parameterize(Operation operation, List<Object> values) {
+        Class<?> operationClass = operation.getClass();
+        if (operationClass != Base.class && operationClass != Unary.class && operationClass != Binary.class && operationClass != Tertiary.class) {
+            return operation;
+        }
+        Operator operator = operation.getOperator();
+        Object[] operands = operation.getOperands().toArray();
+        for (int i = 0; i < operands.length; ++i) {
+            if (i == 1 && (operator == Operators.AS || operator instanceof Operators.LikeOperatorBase)) {
+                continue;
+            }
+            Object operand = operands[i];
+            if (operand != null && operand.getClass() == Operands.Wrapper.class) {
+                operand = ((Operands.Wrapper) operand).getValue();
+            }
+            if (operand instanceof Operation) {
+                operands[i] = parameterize((Operation) operand, values);
+            } else if (Operands.Parameter.isBindable(operand)) {
+                operands[i] = Operands.asParameter(PARAMETER_PREFIX + values.size(), operand);
+                values.add(operand);
+            }
+        }
+        if (operationClass == Unary.class) {
+            return new Unary(operator, operands[0]);
+        }
+        if (operationClass == Binary.class) {
+            return new Binary(operator, operands[0], operands[1]);
+        }
+        if (operationClass == Tertiary.class) {
+            return new Tertiary(operator, operands[0], operands[1], operands[2]);
+        }
+        return new Base(operator, operands);
+    }
+
     public static class Unary extends Base {
         public Unary(Operator operator, Object operand) {
             super(operator, operand);
@@ -34,7 +34,7 @@ public interface Operator {
     default Class getJavaType(From root, List<TupleElement> contexts, Object... operands) {
         return Arrays.stream(operands)
                 .filter(operand -> operand instanceof Operand)
-                .map(operand -> ((Operand) operand).getJavaType(root, contexts))
+                .map(operand -> Operands.getJavaType((Operand) operand, root, contexts))
                 .filter(type -> type != null)
                 .findFirst().orElse(null);
     }
@@ -7,6 +7,7 @@ import org.springframework.util.Assert;
 import javax.persistence.TupleElement;
 import javax.persistence.criteria.*;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.Arrays;
@@ -14,7 +15,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
 
 public class Operators {
 
@@ -26,36 +29,132 @@ public class Operators {
         if (x == null || y == null) {
             return 0;
         }
+        if (x instanceof Number && y instanceof Number && x.getClass() != y.getClass()) {
+            return compareNumbers((Number) x, (Number) y);
+        }
         return x.compareTo(y);
     }
 
+    private static boolean isIntegral(Number number) {
+        return number == null || number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    private static boolean isFloatingPoint(Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+
+    /**
+     * Compares numbers of different types without losing precision, e.g. a large long with a double.
+     */
+    public static final int compareNumbers(Number x, Number y) {
+        if (isIntegral(x) && isIntegral(y)) {
+            return Long.compare(x.longValue(), y.longValue());
+        }
+        if (isFloatingPoint(x) && isFloatingPoint(y)) {
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (isIntegral(x) && isFloatingPoint(y)) {
+            return compare(x.longValue(), y.doubleValue());
+        }
+        if (isFloatingPoint(x) && isIntegral(y)) {
+            return -compare(y.longValue(), x.doubleValue());
+        }
+        return toBigDecimal(x).compareTo(toBigDecimal(y));
+    }
+
+    private static int compare(long x, double y) {
+        if (Double.isNaN(y) || y >= 0x1p63) {
+            return -1;
+        }
+        if (y < -0x1p63) {
+            return 1;
+        }
+        long integralPart = (long) y;
+        if (x != integralPart) {
+            return Long.compare(x, integralPart);
+        }
+        double fraction = y - integralPart;
+        return fraction > 0 ? -1 : (fraction < 0 ? 1 : 0);
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number == null) {
+            return BigDecimal.ZERO;
+        }
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        return BigDecimal.valueOf(number.doubleValue());
+    }
+
     public static final boolean compareTo(Comparable x, Comparable y, Function<Integer, Boolean> reduce) {
         return reduce.apply(compareTo(x, y));
     }
 
-    protected static final Number calculate(Number x, Number y, MathContext mc, TriFunction<BigDecimal, BigDecimal, MathContext, BigDecimal> function) {
-        BigDecimal xDecimal, yDecimal;
-        Class targetClass = null;
+    private static Class getTargetClass(Number x, Number y) {
+        if (x != null) {
+            return x.getClass();
+        }
+        return y == null ? Integer.class : y.getClass();
+    }
 
-        if (x == null) {
-            xDecimal = BigDecimal.valueOf(0.0);
-        } else {
-            xDecimal = BigDecimal.valueOf(x.doubleValue());
-            targetClass = x.getClass();
-        }
-        if (y == null) {
-            yDecimal = BigDecimal.valueOf(0.0);
-        } else {
-            yDecimal = BigDecimal.valueOf(y.doubleValue());
-            if (targetClass == null) {
-                targetClass = y.getClass();
+    /**
+     * Calculates with primitive longs or doubles if possible - the result has the type of the first non-null operand and an ArithmeticException is thrown if it doesn't fit exactly.
+     */
+    protected static final Number calculate(Number x, Number y, MathContext mc,
+                                            LongBinaryOperator longFunction,
+                                            DoubleBinaryOperator doubleFunction,
+                                            TriFunction<BigDecimal, BigDecimal, MathContext, BigDecimal> function) {
+        Class targetClass = getTargetClass(x, y);
+        if (longFunction != null && isIntegral(x) && isIntegral(y)) {
+            long result = longFunction.applyAsLong(x == null ? 0L : x.longValue(), y == null ? 0L : y.longValue());
+            return narrow(result, targetClass);
+        }
+        if (doubleFunction != null && (isIntegral(x) || isFloatingPoint(x)) && (isIntegral(y) || isFloatingPoint(y))) {
+            double result = doubleFunction.applyAsDouble(x == null ? 0.0 : x.doubleValue(), y == null ? 0.0 : y.doubleValue());
+            return narrow(result, targetClass);
+        }
+        return calculate(x, y, mc, function);
+    }
+
+    private static Number narrow(long value, Class targetClass) {
+        if (targetClass.equals(Integer.class)) {
+            return Math.toIntExact(value);
+        }
+        if (targetClass.equals(Short.class)) {
+            if ((short) value != value) {
+                throw new ArithmeticException("Overflow");
+            }
+            return (short) value;
+        }
+        if (targetClass.equals(Byte.class)) {
+            if ((byte) value != value) {
+                throw new ArithmeticException("Overflow");
             }
+            return (byte) value;
+        }
+        return value;
+    }
+
+    private static Number narrow(double value, Class targetClass) {
+        if (targetClass.equals(Double.class)) {
+            return value;
         }
-        if (targetClass == null) {
-            targetClass = Integer.class;
+        if (targetClass.equals(Float.class)) {
+            return (float) value;
         }
+        return narrow(Numerical.toLongExact(value), targetClass);
+    }
 
-        BigDecimal result = function.apply(xDecimal, yDecimal, mc);
+    protected static final Number calculate(Number x, Number y, MathContext mc, TriFunction<BigDecimal, BigDecimal, MathContext, BigDecimal> function) {
+        Class targetClass = getTargetClass(x, y);
+        BigDecimal result = function.apply(toBigDecimal(x), toBigDecimal(y), mc);
 
         if (targetClass.equals(Double.class)) {
             return result.doubleValue();
@@ -115,16 +214,16 @@ public class Operators {
 
     public static final Operator GREATER_THAN = new Operators.Binary<Comparable, Comparable, Boolean>(">", 90,
             CriteriaBuilder::greaterThan,
-            (x, y) -> compareTo(x, y, r -> r > 0));
+            (x, y) -> compareTo(x, y) > 0);
     public static final Operator GREATER_THAN_OR_EQUALS = new Operators.Binary<Comparable, Comparable, Boolean>(">=", 90,
             CriteriaBuilder::greaterThanOrEqualTo,
-            (x, y) -> compareTo(x, y, r -> r >= 0));
+            (x, y) -> compareTo(x, y) >= 0);
     public static final Operator LESS_THAN = new Operators.Binary<Comparable, Comparable, Boolean>("<", 90,
             CriteriaBuilder::lessThan,
-            (x, y) -> compareTo(x, y, r -> r < 0));
+            (x, y) -> compareTo(x, y) < 0);
     public static final Operator LESS_THAN_OR_EQUALS = new Operators.Binary<Comparable, Comparable, Boolean>("<=", 90,
             CriteriaBuilder::lessThanOrEqualTo,
-            (x, y) -> compareTo(x, y, r -> r <= 0));
+            (x, y) -> compareTo(x, y) <= 0);
     public static final Operator IN = new Operators.Binary<>("IN", 90,
             (criteriaBuilder, left, right) -> criteriaBuilder.in(left).value(right),
             (Object needle, Object collection) -> {
@@ -145,11 +244,11 @@ public class Operators {
                 return false;
             });
 
-    public static final Operator ADD = new Numerical("+", 110, CriteriaBuilder::sum, BigDecimal::add);
-    public static final Operator SUB = new Numerical("-", 110, CriteriaBuilder::diff, BigDecimal::subtract);
-    public static final Operator MUL = new Numerical("*", 120, CriteriaBuilder::prod, BigDecimal::multiply);
-    public static final Operator DIV = new Numerical("/", 120, CriteriaBuilder::quot, BigDecimal::divide);
-    public static final Operator MOD = new Numerical("%", 125, CriteriaBuilder::mod, BigDecimal::remainder);
+    public static final Operator ADD = new Numerical("+", 110, CriteriaBuilder::sum, BigDecimal::add, Math::addExact, (x, y) -> x + y);
+    public static final Operator SUB = new Numerical("-", 110, CriteriaBuilder::diff, BigDecimal::subtract, Math::subtractExact, (x, y) -> x - y);
+    public static final Operator MUL = new Numerical("*", 120, CriteriaBuilder::prod, BigDecimal::multiply, Math::multiplyExact, (x, y) -> x * y);
+    public static final Operator DIV = new Numerical("/", 120, CriteriaBuilder::quot, BigDecimal::divide, Numerical::divideExact, Numerical::divide);
+    public static final Operator MOD = new Numerical("%", 125, CriteriaBuilder::mod, BigDecimal::remainder, (x, y) -> x % y, Numerical::remainder);
 
     public static final Operator EQUALS = new Operators.Base("==", NAry.BINARY, 80) {
         @Override
@@ -209,7 +308,7 @@ public class Operators {
         public Expression createExpression(From root, AbstractQuery query, CriteriaBuilder builder, Object... operands) {
             Assert.isTrue(operands.length == 2, "exactly two operands expected for binary operator!");
             Operand leftOperand = operands == null ? null : Operands.from(operands[0]);
-            Class targetType = leftOperand == null ? null : leftOperand.getJavaType(root, Operands.getContexts(query));
+            Class targetType = leftOperand == null ? null : Operands.getJavaType(leftOperand, root, Operands.getContexts(query));
             Expression left = leftOperand == null ? null : leftOperand.asExpression(root, query, builder, targetType);
 
             if (left != null) {
@@ -384,6 +483,7 @@ public class Operators {
 
     /**
      * Base class for numerical operations like addition, subtraction, modulo, etc.
+     * Integral operands are calculated as long, other primitive numbers as double - BigDecimal is only used for other types of numbers.
      */
     public static class Numerical extends Binary<Number, Number, Number> {
         public static final MathContext MATH_CONTEXT = new MathContext(16, RoundingMode.HALF_UP);
@@ -391,7 +491,59 @@ public class Operators {
         public Numerical(String name, int precedence,
                          TriFunction<CriteriaBuilder, Expression, Expression, Expression> expressionFunction,
                          TriFunction<BigDecimal, BigDecimal, MathContext, BigDecimal> evaluationFunction) {
-            super(name, precedence, expressionFunction, (x, y) -> calculate(x, y, MATH_CONTEXT, evaluationFunction));
+            this(name, precedence, expressionFunction, evaluationFunction, null, null);
+        }
+
+        public Numerical(String name, int precedence,
+                         TriFunction<CriteriaBuilder, Expression, Expression, Expression> expressionFunction,
+                         TriFunction<BigDecimal, BigDecimal, MathContext, BigDecimal> evaluationFunction,
+                         LongBinaryOperator longFunction,
+                         DoubleBinaryOperator doubleFunction) {
+            super(name, precedence, expressionFunction, (x, y) -> calculate(x, y, MATH_CONTEXT, longFunction, doubleFunction, evaluationFunction));
+        }
+
+        /**
+         * Integral division, which fails if the result is not exact.
+         */
+        public static long divideExact(long x, long y) {
+            if (y == 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+            if (y == -1) {
+                return Math.negateExact(x);
+            }
+            if (x % y != 0) {
+                throw new ArithmeticException("Rounding necessary");
+            }
+            return x / y;
+        }
+
+        public static double divide(double x, double y) {
+            if (y == 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+            return x / y;
+        }
+
+        public static double remainder(double x, double y) {
+            if (y == 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+            return x % y;
+        }
+
+        public static long toLongExact(double value) {
+            if (value != Math.rint(value)) {
+                throw new ArithmeticException("Rounding necessary");
+            }
+            if (value < -0x1p63 || value >= 0x1p63) {
+                throw new ArithmeticException("Overflow");
+            }
+            return (long) value;
+        }
+
+        public static int toIntExact(double value) {
+            return Math.toIntExact(toLongExact(value));
         }
     }
 
@@ -456,8 +608,8 @@ public class Operators {
     public static abstract class Base implements Operator {
 
         public static final Class decideTargetJavaClass(From root, List<TupleElement> tupleElements, Operand left, Operand right) {
-            Class leftType = left == null ? null : left.getJavaType(root, tupleElements);
-            Class rightType = right == null ? null : right.getJavaType(root, tupleElements);
+            Class leftType = left == null ? null : Operands.getJavaType(left, root, tupleElements);
+            Class rightType = right == null ? null : Operands.getJavaType(right, root, tupleElements);
             if (leftType == null && rightType == null) {
                 return null;
             }
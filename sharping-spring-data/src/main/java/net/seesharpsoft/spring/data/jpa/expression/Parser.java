@@ -1,6 +1,7 @@
 package net.seesharpsoft.spring.data.jpa.expression;
 
 import net.seesharpsoft.UnhandledSwitchCaseException;
+import net.seesharpsoft.commons.collection.LruCache;
 import net.seesharpsoft.commons.util.Lexer;
 import net.seesharpsoft.commons.util.Tokenizer;
 import net.seesharpsoft.spring.data.jpa.expression.Dialect.Token;
@@ -13,58 +14,332 @@ import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static net.seesharpsoft.spring.data.jpa.expression.Dialect.Token.*;
 
 public class Parser {
 
+    private static final String DATETIME_PREFIX = "datetime'";
+
+    /**
+     * Literal types of operands. The type of a literal is determined by a single pass over its characters and is
+     * equivalent to matching the following case insensitive patterns in order:
+     * <pre>
+     * NULL      null
+     * BOOLEAN   true|false
+     * LONG      [-+]?[0-9]+L
+     * INTEGER   [-+]?[0-9]+
+     * GUID      [0-9A-F]{8}-[0-9A-F]{4}-[0-9A-F]{4}-[0-9A-F]{4}-[0-9A-F]{12}
+     * STRING    '.+?'
+     * DOUBLE    [-+]?[0-9]*\.?[0-9]+(E[-+]?[0-9]+)?
+     * DATE      [0-9]{4}-[0-9]{2}-[0-9]{2}
+     * DATETIME  (datetime')?[0-9]{4}-[0-9]{2}-[0-9]{2}[T ][0-9]{2}:[0-9]{2}:[0-9]{2,4}(Z|[+-][0-9]{4})?'?
+     * </pre>
+     */
     enum Primitive {
-        NULL("null", void.class, source -> null),
-        BOOLEAN("true|false", boolean.class, null),
-        LONG("[-+]?[0-9]+L", Long.class, source -> source.substring(0, source.length() - 1)),
-        INTEGER("[-+]?[0-9]+", Integer.class, null),
-        GUID("[0-9A-Fa-f]{8}[-][0-9A-Fa-f]{4}[-][0-9A-Fa-f]{4}[-][0-9A-Fa-f]{4}[-][0-9A-Fa-f]{12}", UUID.class, null),
-        STRING("'.+?'", String.class, source -> source.substring(1, source.length() - 1)),
-        DOUBLE("[-+]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?", double.class, null),
-        DATE("[0-9]{4}[-][0-9]{2}[-][0-9]{2}", LocalDate.class, null),
-        DATETIME("(datetime')?[0-9]{4}[-][0-9]{2}[-][0-9]{2}[T ][0-9]{2}[:][0-9]{2}[:][0-9]{2,4}(Z|[+-][0-9]{4})?'?", LocalDateTime.class, source -> source.startsWith("datetime'") ? source.substring("datetime'".length(), source.length() - 1) : source);
-
-        final Pattern pattern;
+        NULL(void.class, source -> null, null),
+        BOOLEAN(boolean.class, null, Boolean::valueOf),
+        LONG(Long.class, source -> source.substring(0, source.length() - 1), Long::valueOf),
+        INTEGER(Integer.class, null, Integer::valueOf),
+        GUID(UUID.class, null, UUID::fromString),
+        STRING(String.class, source -> source.substring(1, source.length() - 1), source -> source),
+        DOUBLE(double.class, null, Double::valueOf),
+        DATE(LocalDate.class, null, null),
+        DATETIME(LocalDateTime.class, source -> source.startsWith(DATETIME_PREFIX) ? source.substring(DATETIME_PREFIX.length(), source.length() - 1) : source, null);
+
         final Class javaType;
         final Converter<String, String> converter;
+        final Converter<String, Object> valueConverter;
 
-        Primitive(String pattern, Class javaType, Converter<String, String> converter) {
-            this.pattern = Pattern.compile("(?i)^" + pattern + "$");
+        Primitive(Class javaType, Converter<String, String> converter, Converter<String, Object> valueConverter) {
             this.javaType = javaType;
             this.converter = converter;
+            this.valueConverter = valueConverter;
         }
 
         public static Primitive parse(String input) {
-            for (Primitive type : Primitive.values()) {
-                if (type.pattern.matcher(input).matches()) {
-                    return type;
+            int length = input.length();
+            if (length == 0) {
+                return null;
+            }
+            if (length == 36 && isGuid(input)) {
+                return GUID;
+            }
+            char first = input.charAt(0);
+            switch (first) {
+                case '\'':
+                    return isString(input) ? STRING : null;
+                case 'n':
+                case 'N':
+                    return equalsIgnoreCase(input, 0, "null") && length == 4 ? NULL : null;
+                case 't':
+                case 'T':
+                    return equalsIgnoreCase(input, 0, "true") && length == 4 ? BOOLEAN : null;
+                case 'f':
+                case 'F':
+                    return equalsIgnoreCase(input, 0, "false") && length == 5 ? BOOLEAN : null;
+                case 'd':
+                case 'D':
+                    return isDateTime(input) ? DATETIME : null;
+                case '+':
+                case '-':
+                case '.':
+                    return parseNumber(input);
+                default:
+                    if (!isDigit(first)) {
+                        return null;
+                    }
+                    Primitive number = parseNumber(input);
+                    if (number != null) {
+                        return number;
+                    }
+                    if (isDate(input)) {
+                        return DATE;
+                    }
+                    return isDateTime(input) ? DATETIME : null;
+            }
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isHexDigit(char c) {
+            return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+
+        private static boolean isLineTerminator(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        /**
+         * ASCII only comparison, other than {@link String#equalsIgnoreCase(String)}.
+         */
+        private static boolean equalsIgnoreCase(String input, int offset, String lowerCaseExpected) {
+            if (input.length() - offset < lowerCaseExpected.length()) {
+                return false;
+            }
+            for (int i = 0; i < lowerCaseExpected.length(); ++i) {
+                char c = input.charAt(offset + i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != lowerCaseExpected.charAt(i)) {
+                    return false;
                 }
             }
-            return null;
+            return true;
+        }
+
+        private static int skipDigits(String input, int index) {
+            while (index < input.length() && isDigit(input.charAt(index))) {
+                ++index;
+            }
+            return index;
+        }
+
+        private static boolean isDigits(String input, int start, int count) {
+            return skipDigits(input, start) - start >= count;
+        }
+
+        private static Primitive parseNumber(String input) {
+            int length = input.length();
+            int index = 0;
+            char c = input.charAt(0);
+            if (c == '+' || c == '-') {
+                ++index;
+            }
+            int digitsStart = index;
+            index = skipDigits(input, index);
+            int digits = index - digitsStart;
+            if (digits > 0) {
+                if (index == length) {
+                    return INTEGER;
+                }
+                c = input.charAt(index);
+                if ((c == 'L' || c == 'l') && index + 1 == length) {
+                    return LONG;
+                }
+            }
+            if (index < length && input.charAt(index) == '.') {
+                int fractionStart = ++index;
+                index = skipDigits(input, index);
+                if (index == fractionStart) {
+                    return null;
+                }
+            } else if (digits == 0) {
+                return null;
+            }
+            if (index < length) {
+                c = input.charAt(index);
+                if (c != 'e' && c != 'E') {
+                    return null;
+                }
+                ++index;
+                if (index < length && (input.charAt(index) == '+' || input.charAt(index) == '-')) {
+                    ++index;
+                }
+                int exponentStart = index;
+                index = skipDigits(input, index);
+                if (index == exponentStart || index < length) {
+                    return null;
+                }
+            }
+            return DOUBLE;
+        }
+
+        private static boolean isGuid(String input) {
+            for (int i = 0; i < 36; ++i) {
+                char c = input.charAt(i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                } else if (!isHexDigit(c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isString(String input) {
+            int last = input.length() - 1;
+            if (last < 2 || input.charAt(last) != '\'') {
+                return false;
+            }
+            for (int i = 1; i < last; ++i) {
+                if (isLineTerminator(input.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int matchDate(String input, int index) {
+            if (index + 10 > input.length() ||
+                    !isDigits(input, index, 4) || input.charAt(index + 4) != '-' ||
+                    !isDigits(input, index + 5, 2) || input.charAt(index + 7) != '-' ||
+                    !isDigits(input, index + 8, 2)) {
+                return -1;
+            }
+            return index + 10;
+        }
+
+        private static boolean isDate(String input) {
+            return input.length() == 10 && matchDate(input, 0) == 10;
+        }
+
+        private static boolean isDateTime(String input) {
+            int length = input.length();
+            int index = equalsIgnoreCase(input, 0, DATETIME_PREFIX) ? DATETIME_PREFIX.length() : 0;
+            index = matchDate(input, index);
+            if (index == -1 || index + 9 > length) {
+                return false;
+            }
+            char c = input.charAt(index);
+            if (c != 'T' && c != 't' && c != ' ') {
+                return false;
+            }
+            if (!isDigits(input, index + 1, 2) || input.charAt(index + 3) != ':' ||
+                    !isDigits(input, index + 4, 2) || input.charAt(index + 6) != ':') {
+                return false;
+            }
+            index += 7;
+            int secondsStart = index;
+            index = skipDigits(input, index);
+            if (index - secondsStart < 2 || index - secondsStart > 4) {
+                return false;
+            }
+            if (index < length) {
+                c = input.charAt(index);
+                if (c == 'Z' || c == 'z') {
+                    ++index;
+                } else if (c == '+' || c == '-') {
+                    if (!isDigits(input, index + 1, 4)) {
+                        return false;
+                    }
+                    index += 5;
+                }
+            }
+            if (index < length && input.charAt(index) == '\'') {
+                ++index;
+            }
+            return index == length;
         }
 
         public Class getJavaType() {
             return javaType;
         }
 
+        /**
+         * Converts the literal to its value. Numbers, booleans, UUIDs and strings are converted directly, other types via the conversion service.
+         *
+         * @param conversionService the conversion service - if null, the prepared literal is returned as string
+         * @param input             the literal
+         * @return the value
+         */
         public Object convert(ConversionService conversionService, String input) {
             String preparedInput = converter == null ? input : converter.convert(input);
             if (preparedInput == null) {
                 return null;
             }
-            return conversionService == null ? preparedInput : conversionService.convert(preparedInput, javaType);
+            if (conversionService == null) {
+                return preparedInput;
+            }
+            if (valueConverter != null) {
+                try {
+                    return valueConverter.convert(preparedInput);
+                } catch (NumberFormatException exc) {
+                    // out of range - let the conversion service report the failure
+                }
+            }
+            return conversionService.convert(preparedInput, javaType);
+        }
+    }
+
+    /**
+     * Key of a parsed expression. Besides dialect and expression text, the conversion service is part of the key since
+     * the parsed operands refer to it.
+     */
+    public static final class CacheKey {
+        private final Dialect dialect;
+        private final ConversionService conversionService;
+        private final String expression;
+
+        public CacheKey(Dialect dialect, ConversionService conversionService, String expression) {
+            this.dialect = dialect;
+            this.conversionService = conversionService;
+            this.expression = expression;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey otherKey = (CacheKey) other;
+            return dialect == otherKey.dialect &&
+                    conversionService == otherKey.conversionService &&
+                    Objects.equals(expression, otherKey.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(dialect) + System.identityHashCode(conversionService)) + Objects.hashCode(expression);
         }
     }
 
+    private static final int MAX_OPERATOR_CACHE_SIZE = 256;
+
     private ConversionService conversionService;
     private final Dialect dialect;
-    private Lexer<Token> lexer;
+    private final Map<String, Operator> operatorCache;
+    private volatile Lexer<Token> lexer;
+    private volatile LruCache<CacheKey, Operand> expressionCache;
 
     private static Tokenizer<Token> createTokenizer(Dialect dialect) {
         Tokenizer<Token> tokenizer = new Tokenizer();
@@ -88,12 +363,15 @@ public class Parser {
         expectOperand.addNextState(expectOperator, OPERAND, NULL);
         expectOperator.addNextState(expectOperator, BRACKET_CLOSE);
         expectOperator.addNextState(expectOperand, BINARY_OPERATOR, METHOD_PARAMETER_SEPARATOR);
+        // freeze state graph
+        lexer.getTransitionTable();
 
         return lexer;
     }
 
     public Parser(Dialect dialect, ConversionService conversionService) {
         this.dialect = dialect;
+        this.operatorCache = new ConcurrentHashMap<>();
         this.setConversionService(conversionService);
     }
 
@@ -102,15 +380,37 @@ public class Parser {
     }
 
     protected Lexer<Token> getLexer() {
-        if (this.lexer == null) {
-            this.lexer = createLexer(createTokenizer(dialect));
+        Lexer<Token> currentLexer = this.lexer;
+        if (currentLexer == null) {
+            currentLexer = createLexer(createTokenizer(dialect).compile());
+            this.lexer = currentLexer;
         }
-        return this.lexer;
+        return currentLexer;
     }
 
     public <T extends Operand> T parseExpression(String expression) throws ParseException {
-        List<Tokenizer.TokenInfo<Token>> rpn = toRPN(tokenize(expression));
-        return (T)evaluateRPN(rpn);
+        LruCache<CacheKey, Operand> cache = this.expressionCache;
+        if (cache == null || expression == null) {
+            return (T)doParseExpression(expression);
+        }
+        CacheKey key = new CacheKey(dialect, conversionService, expression);
+        Operand operand = cache.get(key);
+        if (operand == null) {
+            operand = doParseExpression(expression);
+            if (operand != null) {
+                cache.put(key, operand);
+            }
+        }
+        return (T)operand;
+    }
+
+    protected Operand doParseExpression(String expression) throws ParseException {
+        OperatorResolver operatorResolver = new OperatorResolver();
+        Tokenizer.TokenStream<Token> tokenStream = getLexer().tokenizeStream(expression, operatorResolver);
+        Operator[] operators = operatorResolver.getOperators(tokenStream);
+        int[] rpn = new int[tokenStream.size()];
+        int rpnSize = toRPN(tokenStream, operators, rpn);
+        return evaluateRPN(tokenStream, operators, rpn, rpnSize);
     }
 
     public Operand parseValue(String value) {
@@ -135,23 +435,40 @@ public class Parser {
         this.conversionService = conversionService;
     }
 
+    public LruCache<CacheKey, Operand> getExpressionCache() {
+        return this.expressionCache;
+    }
+
+    /**
+     * Sets the cache for parsed expressions. The cache can be shared between parsers of different dialects.
+     *
+     * @param expressionCache the cache or null to disable caching
+     */
+    public void setExpressionCache(LruCache<CacheKey, Operand> expressionCache) {
+        this.expressionCache = expressionCache;
+    }
+
     protected List<Tokenizer.TokenInfo<Token>> tokenize(String input) throws ParseException {
-        return getLexer().tokenize(input);
+        return tokenizeStream(input).toTokenInfos();
+    }
+
+    protected Tokenizer.TokenStream<Token> tokenizeStream(String input) throws ParseException {
+        return getLexer().tokenizeStream(input);
     }
 
-    private Operand getOperand(Tokenizer.TokenInfo<Token> tokenInfo) {
-        switch (tokenInfo.token) {
+    private Operand getOperand(Tokenizer.TokenStream<Token> tokenStream, int index) {
+        switch (tokenStream.getToken(index)) {
             case OPERAND:
-                return parseValue(tokenInfo.sequence);
+                return parseValue(tokenStream.getSequence(index));
             case NULL:
                 return null;
             default:
-                throw new UnhandledSwitchCaseException(tokenInfo.token);
+                throw new UnhandledSwitchCaseException(tokenStream.getToken(index));
         }
     }
 
-    private static boolean isOperator(Tokenizer.TokenInfo<Token> tokenInfo) {
-        switch (tokenInfo.token) {
+    private static boolean isOperator(Token token) {
+        switch (token) {
             case UNARY_OPERATOR:
             case BINARY_OPERATOR:
             case UNARY_OPERATOR_METHOD:
@@ -163,8 +480,8 @@ public class Parser {
         }
     }
 
-    private static boolean isMethod(Tokenizer.TokenInfo<Token> tokenInfo) {
-        switch (tokenInfo.token) {
+    private static boolean isMethod(Token token) {
+        switch (token) {
             case UNARY_OPERATOR_METHOD:
             case BINARY_OPERATOR_METHOD:
             case TERTIARY_OPERATOR_METHOD:
@@ -174,97 +491,174 @@ public class Parser {
         }
     }
 
-    private Operator getOperator(Tokenizer.TokenInfo<Token> tokenInfo) {
-        Assert.isTrue(isOperator(tokenInfo), "operator tokenInfo required!");
-        return dialect.getOperator(tokenInfo.sequence);
+    /**
+     * Resolves the operator of the given sequence - the case insensitive dialect lookup is done once per spelling.
+     *
+     * @param sequence the operator sequence
+     * @return the operator or null if not defined by the dialect
+     */
+    protected Operator getOperator(String sequence) {
+        Operator operator = operatorCache.get(sequence);
+        if (operator == null) {
+            operator = dialect.getOperator(sequence);
+            if (operator != null && operatorCache.size() < MAX_OPERATOR_CACHE_SIZE) {
+                operatorCache.put(sequence, operator);
+            }
+        }
+        return operator;
     }
 
-    private List<Tokenizer.TokenInfo<Token>> toRPN(List<Tokenizer.TokenInfo<Token>> inputTokenInfos) throws ParseException {
-        Queue<Tokenizer.TokenInfo<Token>> in = new LinkedList(inputTokenInfos);
-        List<Tokenizer.TokenInfo<Token>> out = new LinkedList();
-        Deque<Tokenizer.TokenInfo> stack = new LinkedList();
+    /**
+     * Resolves the operator of each operator token while the expression is tokenized, aligned with the token indices.
+     */
+    private class OperatorResolver implements Tokenizer.MatchCallback<Token> {
+        private Operator[] operators = new Operator[16];
+        private int size = 0;
+        private int unknownIndex = -1;
+
+        @Override
+        public boolean apply(Token token, CharSequence input, int start, int end) {
+            if (size == operators.length) {
+                operators = Arrays.copyOf(operators, size * 2);
+            }
+            if (isOperator(token)) {
+                Operator operator = getOperator(input.subSequence(start, end).toString());
+                if (operator == null && unknownIndex == -1) {
+                    unknownIndex = size;
+                }
+                operators[size] = operator;
+            }
+            ++size;
+            return true;
+        }
+
+        /**
+         * @param tokenStream the lexed expression
+         * @return the operator per token index, null for non-operator tokens
+         * @throws ParseException if an operator is not defined by the dialect
+         */
+        public Operator[] getOperators(Tokenizer.TokenStream<Token> tokenStream) throws ParseException {
+            if (unknownIndex != -1) {
+                throw new ParseException(String.format("unknown operator '%s'", tokenStream.getSequence(unknownIndex)), tokenStream.getStart(unknownIndex));
+            }
+            return operators;
+        }
+    }
 
-        while(!in.isEmpty()) {
-            Tokenizer.TokenInfo<Token> tokenInfo = in.poll();
-            switch (tokenInfo.token) {
+    /**
+     * Shunting-yard: writes the token indices in reverse polish notation to the given output array.
+     *
+     * @param tokenStream the lexed expression
+     * @param operators   the resolved operators per token index
+     * @param out         output array, at least the size of the token stream
+     * @return the number of indices written to the output array
+     * @throws ParseException if brackets are unbalanced
+     */
+    private int toRPN(Tokenizer.TokenStream<Token> tokenStream, Operator[] operators, int[] out) throws ParseException {
+        int size = tokenStream.size();
+        int[] stack = new int[size];
+        int outSize = 0;
+        int stackSize = 0;
+
+        for (int index = 0; index < size; ++index) {
+            Token token = tokenStream.getToken(index);
+            switch (token) {
                 case UNARY_OPERATOR:
                 case BINARY_OPERATOR:
-                    Operator operator = getOperator(tokenInfo);
-                    while (!stack.isEmpty() && isOperator(stack.peek())) {
-                        if (!operator.hasHigherPrecedenceThan(getOperator(stack.peek()))) {
-                            out.add(stack.pop());
-                            continue;
-                        }
-                        break;
+                    Operator operator = operators[index];
+                    while (stackSize > 0 && operators[stack[stackSize - 1]] != null &&
+                            !operator.hasHigherPrecedenceThan(operators[stack[stackSize - 1]])) {
+                        out[outSize++] = stack[--stackSize];
                     }
-                    stack.push(tokenInfo);
+                    stack[stackSize++] = index;
                     break;
                 case BRACKET_OPEN:
-                    stack.push(tokenInfo);
+                    stack[stackSize++] = index;
                     break;
                 case BRACKET_CLOSE:
-                    while (!stack.isEmpty() && stack.peek().token != BRACKET_OPEN) {
-                        out.add(stack.pop());
+                    while (stackSize > 0 && tokenStream.getToken(stack[stackSize - 1]) != BRACKET_OPEN) {
+                        out[outSize++] = stack[--stackSize];
                     }
-                    stack.pop();
+                    if (stackSize == 0) {
+                        throw new ParseException("unbalanced closing bracket", tokenStream.getStart(index));
+                    }
+                    --stackSize;
                     break;
                 case UNARY_OPERATOR_METHOD:
                 case BINARY_OPERATOR_METHOD:
                 case TERTIARY_OPERATOR_METHOD:
-                    Assert.isTrue(in.peek().token == BRACKET_OPEN, "opening bracket after method name expected!");
-                    stack.push(in.poll());
-                    stack.push(tokenInfo);
+                    Assert.isTrue(index + 1 < size && tokenStream.getToken(index + 1) == BRACKET_OPEN, "opening bracket after method name expected!");
+                    stack[stackSize++] = ++index;
+                    stack[stackSize++] = index - 1;
                     break;
                 case METHOD_PARAMETER_SEPARATOR:
-                    while (!stack.isEmpty() && !isMethod(stack.peek())) {
-                        out.add(stack.pop());
+                    while (stackSize > 0 && !isMethod(tokenStream.getToken(stack[stackSize - 1]))) {
+                        out[outSize++] = stack[--stackSize];
                     }
                     break;
                 case OPERAND:
                 case NULL:
-                    out.add(tokenInfo);
+                    out[outSize++] = index;
                     break;
                 default:
-                    throw new UnhandledSwitchCaseException(tokenInfo.token);
+                    throw new UnhandledSwitchCaseException(token);
             }
         }
-        while (!stack.isEmpty()) {
-            out.add(stack.pop());
+        while (stackSize > 0) {
+            out[outSize++] = stack[--stackSize];
         }
 
-        return out;
+        return outSize;
     }
 
-    private Operand evaluateRPN(List<Tokenizer.TokenInfo<Token>> tokenInfos) {
-        Deque<Operand> operands = new LinkedList<>();
-
-        for (Tokenizer.TokenInfo tokenInfo : tokenInfos) {
-            if (isOperator(tokenInfo)) {
-                Operator operator = getOperator(tokenInfo);
-                Operation operation = null;
-                Operand right = operands.pop();
-                switch(operator.getNAry()) {
-                    case UNARY:
-                        operation = new Operations.Unary(operator, right);
-                        break;
-                    case BINARY:
-                        Operand left = operands.pop();
-                        operation = new Operations.Binary(operator, left, right);
-                        break;
-                    case TERTIARY:
-                        Operand second = operands.pop();
-                        Operand first = operands.pop();
-                        operation = new Operations.Tertiary(operator, first, second, right);
-                        break;
-                    default:
-                        throw new UnhandledSwitchCaseException(operator.getNAry());
-                }
-                operands.push(operation);
-            } else {
-                operands.push(getOperand(tokenInfo));
+    private Operand evaluateRPN(Tokenizer.TokenStream<Token> tokenStream, Operator[] operators, int[] rpn, int rpnSize) throws ParseException {
+        Operand[] operands = new Operand[rpnSize];
+        int size = 0;
+
+        for (int i = 0; i < rpnSize; ++i) {
+            int index = rpn[i];
+            Operator operator = operators[index];
+            if (operator == null) {
+                operands[size++] = getOperand(tokenStream, index);
+                continue;
+            }
+            int arity = getArity(operator);
+            if (size < arity) {
+                throw new ParseException(String.format("missing operand for '%s'", tokenStream.getSequence(index)), tokenStream.getStart(index));
+            }
+            size -= arity;
+            switch (operator.getNAry()) {
+                case UNARY:
+                    operands[size] = new Operations.Unary(operator, operands[size]);
+                    break;
+                case BINARY:
+                    operands[size] = new Operations.Binary(operator, operands[size], operands[size + 1]);
+                    break;
+                case TERTIARY:
+                    operands[size] = new Operations.Tertiary(operator, operands[size], operands[size + 1], operands[size + 2]);
+                    break;
+                default:
+                    throw new UnhandledSwitchCaseException(operator.getNAry());
             }
+            ++size;
         }
 
-        return operands.pop();
+        if (size == 0) {
+            throw new ParseException("empty expression", 0);
+        }
+        return operands[size - 1];
+    }
+
+    private static int getArity(Operator operator) {
+        switch (operator.getNAry()) {
+            case UNARY:
+                return 1;
+            case BINARY:
+                return 2;
+            case TERTIARY:
+                return 3;
+            default:
+                throw new UnhandledSwitchCaseException(operator.getNAry());
+        }
     }
 }
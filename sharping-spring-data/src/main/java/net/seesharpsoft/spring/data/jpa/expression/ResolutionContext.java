@@ -0,0 +1,193 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import net.seesharpsoft.spring.data.jpa.ExpressionHolder;
+
+import javax.persistence.TupleElement;
+import javax.persistence.criteria.*;
+import javax.persistence.metamodel.Attribute;
+import java.util.*;
+
+/**
+ * The roots, joins and selections of a query (see {@link Operands#getContexts(AbstractQuery)}) with their names and aliases indexed
+ * and resolved paths memoized, so operands and operators do not walk the whole query for each lookup.
+ * Within {@link #open()} the context of a query is shared by all operands and operators and only rebuilt if roots, joins or the selection changed.
+ */
+public class ResolutionContext extends AbstractList<TupleElement> {
+
+    /**
+     * Scope of shared resolution contexts, see {@link #open()}.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class ScopeState {
+        private final Map<AbstractQuery, ResolutionContext> contexts = new IdentityHashMap<>();
+        private int depth;
+    }
+
+    private static final ThreadLocal<ScopeState> SCOPE = new ThreadLocal<>();
+
+    private final List<TupleElement> elements;
+    private final Selection<?> selection;
+    private final int rootCount;
+    private final int joinCount;
+    private final Map<String, Expression> expressions = new HashMap<>();
+    private final Map<From, Map<String, Expression>> paths = new IdentityHashMap<>();
+    private final Map<From, Map<Operand, Class>> javaTypes = new IdentityHashMap<>();
+
+    protected ResolutionContext(AbstractQuery query) {
+        Set<Root<?>> roots = Operands.getAllRoots(query);
+        List<TupleElement> allElements = new ArrayList<>(roots);
+        int joins = 0;
+        for (Root<?> root : roots) {
+            Set<Join<?, ?>> rootJoins = Operands.getAllJoins(root);
+            allElements.addAll(rootJoins);
+            joins += rootJoins.size();
+        }
+        allElements.addAll(Operands.getAllSelections(query.getSelection()));
+        this.elements = Collections.unmodifiableList(allElements);
+        this.selection = query.getSelection();
+        this.rootCount = roots.size();
+        this.joinCount = joins;
+        for (TupleElement element : elements) {
+            String name = getName(element);
+            if (name != null) {
+                expressions.putIfAbsent(name.toLowerCase(Locale.ROOT),
+                        element instanceof ExpressionHolder ? ((ExpressionHolder) element).getExpression() : (Expression) element);
+            }
+        }
+    }
+
+    /**
+     * The name an element is found by: the alias of expressions, the attribute name of paths without alias.
+     */
+    protected static String getName(TupleElement element) {
+        if (element.getAlias() != null) {
+            return element instanceof Expression || element instanceof ExpressionHolder ? element.getAlias() : null;
+        }
+        if (element instanceof Path && ((Path) element).getModel() instanceof Attribute) {
+            return ((Attribute) ((Path) element).getModel()).getName();
+        }
+        return null;
+    }
+
+    /**
+     * Opens a scope sharing the resolution contexts of all queries on the current thread until it is closed - meant to enclose the construction of a query.
+     * Scopes can be nested, the contexts are discarded when the outermost scope is closed.
+     *
+     * @return the scope to close
+     */
+    public static Scope open() {
+        ScopeState state = SCOPE.get();
+        if (state == null) {
+            state = new ScopeState();
+            SCOPE.set(state);
+        }
+        ++state.depth;
+        final ScopeState openedState = state;
+        return () -> {
+            if (--openedState.depth == 0) {
+                SCOPE.remove();
+            }
+        };
+    }
+
+    /**
+     * Returns the context of the query - the shared one if in scope and still up to date.
+     *
+     * @param query the query
+     * @return the context
+     */
+    public static ResolutionContext of(AbstractQuery query) {
+        ScopeState state = SCOPE.get();
+        if (state == null) {
+            return new ResolutionContext(query);
+        }
+        ResolutionContext context = state.contexts.get(query);
+        if (context == null || !context.isValid(query)) {
+            context = new ResolutionContext(query);
+            state.contexts.put(query, context);
+        }
+        return context;
+    }
+
+    protected boolean isValid(AbstractQuery query) {
+        if (selection != query.getSelection()) {
+            return false;
+        }
+        Set<Root<?>> roots = Operands.getAllRoots(query);
+        if (roots.size() != rootCount) {
+            return false;
+        }
+        int joins = 0;
+        for (Root<?> root : roots) {
+            joins += countJoins(root);
+        }
+        return joins == joinCount;
+    }
+
+    private static int countJoins(From<?, ?> from) {
+        int count = 0;
+        for (Join<?, ?> join : from.getJoins()) {
+            count += 1 + countJoins(join);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first element with the given alias - or attribute name if it has no alias - ignoring case.
+     *
+     * @param nameOrAlias the name or alias
+     * @return the expression or null if not found
+     */
+    public Expression findExpression(String nameOrAlias) {
+        return expressions.get(nameOrAlias.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the memoized expression for the path, see {@link Operands#getPath(From, String[], List)}.
+     *
+     * @param from the starting path
+     * @param nameOrAliasOrPath name, alias or path of the expression
+     * @return the expression
+     */
+    public Expression getPath(From from, String nameOrAliasOrPath) {
+        Map<String, Expression> fromPaths = paths.computeIfAbsent(from, key -> new HashMap<>());
+        Expression expression = fromPaths.get(nameOrAliasOrPath);
+        if (expression == null) {
+            expression = Operands.getPath(from, Operands.getPathParts(nameOrAliasOrPath), this);
+            fromPaths.put(nameOrAliasOrPath, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Returns the memoized java type of the operand, see {@link Operand#getJavaType(From, List)} - nested operations are resolved once per query
+     * instead of once per operator they are passed to.
+     *
+     * @param root the root
+     * @param operand the operand
+     * @return the java type or null if unknown
+     */
+    public Class getJavaType(From root, Operand operand) {
+        Map<Operand, Class> rootTypes = javaTypes.computeIfAbsent(root, key -> new IdentityHashMap<>());
+        if (rootTypes.containsKey(operand)) {
+            return rootTypes.get(operand);
+        }
+        Class javaType = operand.getJavaType(root, this);
+        rootTypes.put(operand, javaType);
+        return javaType;
+    }
+
+    @Override
+    public TupleElement get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+}
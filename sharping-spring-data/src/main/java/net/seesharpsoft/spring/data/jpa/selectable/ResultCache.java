@@ -0,0 +1,25 @@
+package net.seesharpsoft.spring.data.jpa.selectable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Caches the results of the selectable repository, see {@link Selectable#resultCache()} - disabled unless a {@link #size()} is given.
+ * <p>
+ * Changes of the selected entities are not detected: cached results are only dropped when the cache is full, their {@link #timeToLive()}
+ * passed or they are evicted manually via {@code SelectableRepository#evictCachedResults}.
+ * Lists and pages are copied for each caller, the rows in them are shared and must be treated as read-only.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ResultCache {
+
+    /**
+     * @return the maximum number of cached results, 0 disables the cache
+     */
+    int size() default 0;
+
+    /**
+     * @return the maximum age of cached results as ISO-8601 duration (e.g. "PT5M"), empty to keep them until evicted
+     */
+    String timeToLive() default "";
+}
@@ -16,4 +16,6 @@ public @interface Selectable {
     String where() default "";
 
     String having() default "";
+
+    ResultCache resultCache() default @ResultCache;
 }
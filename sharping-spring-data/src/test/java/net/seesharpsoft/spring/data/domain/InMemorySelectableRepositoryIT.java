@@ -0,0 +1,77 @@
+package net.seesharpsoft.spring.data.domain;
+
+import net.seesharpsoft.spring.data.domain.impl.InMemorySelectableRepositoryImpl;
+import net.seesharpsoft.spring.data.domain.impl.SelectableRepositoryFactoryImpl;
+import net.seesharpsoft.spring.data.domain.impl.SqlParserImpl;
+import net.seesharpsoft.spring.data.jpa.OperationSpecification;
+import net.seesharpsoft.spring.data.jpa.expression.Dialects;
+import net.seesharpsoft.spring.data.jpa.expression.Operands;
+import net.seesharpsoft.spring.data.jpa.expression.Operations;
+import net.seesharpsoft.spring.test.model.User;
+import net.seesharpsoft.spring.test.selectable.UserInfo;
+import org.assertj.core.groups.Tuple;
+import org.junit.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemorySelectableRepositoryIT extends SelectableRepositoryIT {
+
+    @Override
+    protected SelectableRepository getSelectableRepository(Class selectableClass) {
+        SelectableRepositoryFactory factory = new SelectableRepositoryFactoryImpl(entityManager, new SqlParserImpl(Dialects.SQL.getParser()));
+        return factory.createRepository(InMemorySelectableRepositoryImpl.class, selectableClass);
+    }
+
+    @Test
+    public void should_find_page_in_memory() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+
+        Page<UserInfo> page = repo.findAll(
+                new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), 1)),
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "fullName"))
+        );
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent())
+                .extracting("id", "fullName")
+                .containsExactly(
+                        Tuple.tuple(3, "Carla X"),
+                        Tuple.tuple(2, "Bob Y")
+                );
+    }
+
+    @Test
+    public void should_count_in_memory() {
+        InMemorySelectableRepositoryImpl<UserInfo> repo = (InMemorySelectableRepositoryImpl) getSelectableRepository(UserInfo.class);
+        repo.addIndex("id");
+
+        assertThat(repo.count(null)).isEqualTo(4);
+        assertThat(repo.count(new OperationSpecification<>(Operations.greaterThanOrEquals(Operands.asReference("id"), 3)))).isEqualTo(2);
+        assertThat(repo.count(new OperationSpecification<>(Operations.equals(Operands.asReference("fullName"), "Bob Y")))).isEqualTo(1);
+    }
+
+    @Test
+    public void should_keep_rows_until_refresh() {
+        InMemorySelectableRepositoryImpl<UserInfo> repo = (InMemorySelectableRepositoryImpl) getSelectableRepository(UserInfo.class);
+
+        assertThat(repo.findAll()).hasSize(4);
+
+        entityManager.merge(new User(4, "Dave", "W", "dave@mail.com"));
+        entityManager.flush();
+
+        assertThat(repo.findAll()).hasSize(4);
+        repo.refresh();
+        assertThat(repo.findAll()).hasSize(5);
+
+        entityManager.merge(new User(5, "Eve", "V", "eve@mail.com"));
+        entityManager.flush();
+
+        repo.setRefreshInterval(Duration.ZERO);
+        assertThat(repo.findAll()).hasSize(6);
+    }
+}
@@ -0,0 +1,104 @@
+package net.seesharpsoft.spring.data.domain;
+
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class KeysetRequestUT {
+
+    private static final Sort SORT = Sort.by(Sort.Order.asc("name"), Sort.Order.desc("id"));
+
+    @Test
+    public void constructor_should_create_first_page() {
+        KeysetRequest request = new KeysetRequest(10, SORT);
+
+        assertThat(request.getKeys(), nullValue());
+        assertThat(request.getToken(), nullValue());
+        assertThat(request.getPageNumber(), equalTo(0));
+        assertThat(request.getOffset(), equalTo(0L));
+        assertThat(request.hasPrevious(), equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_not_accept_unsorted() {
+        new KeysetRequest(10, Sort.unsorted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_not_accept_incorrect_key_count() {
+        new KeysetRequest(1, Arrays.asList("a"), 10, SORT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_not_accept_null_keys() {
+        new KeysetRequest(1, Arrays.asList("a", null), 10, SORT);
+    }
+
+    @Test
+    public void next_should_return_next_page() {
+        KeysetRequest request = new KeysetRequest(10, SORT).next("Bob", 12L);
+
+        assertThat(request.getKeys(), contains("Bob", 12L));
+        assertThat(request.getPageNumber(), equalTo(1));
+        assertThat(request.getOffset(), equalTo(10L));
+        assertThat(request.hasPrevious(), equalTo(true));
+        assertThat(request.first(), equalTo((Pageable) new KeysetRequest(10, SORT)));
+    }
+
+    @Test
+    public void token_should_restore_request() {
+        Sort sort = Sort.by("a", "b", "c", "d", "e", "f");
+        KeysetRequest request = new KeysetRequest(7, Arrays.asList("\u00e4\u20ac", 1, Long.MAX_VALUE, new BigDecimal("1.50"), new Date(12345L), LocalDate.of(2019, 4, 12)), 25, sort);
+
+        KeysetRequest restored = KeysetRequest.of(request.getToken(), 25, sort);
+
+        assertThat(restored, equalTo(request));
+        assertThat(restored.getKeys().get(3), equalTo(new BigDecimal("1.50")));
+    }
+
+    @Test
+    public void of_should_return_first_page_for_empty_token() {
+        assertThat(KeysetRequest.of("", 10, SORT), equalTo(new KeysetRequest(10, SORT)));
+        assertThat(KeysetRequest.of(null, 10, SORT), equalTo(new KeysetRequest(10, SORT)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_should_not_accept_invalid_token() {
+        KeysetRequest.of("no-token", 10, SORT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_should_not_accept_token_of_other_sort() {
+        KeysetRequest.of(new KeysetRequest(10, SORT).next("Bob", 12L).getToken(), 10, Sort.by("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_should_not_accept_token_of_other_sort_direction() {
+        KeysetRequest.of(new KeysetRequest(10, SORT).next("Bob", 12L).getToken(), 10, Sort.by(Sort.Order.asc("name"), Sort.Order.asc("id")));
+    }
+
+    @Test
+    public void of_should_use_sort_of_token_if_unsorted() {
+        KeysetRequest request = new KeysetRequest(10, SORT).next("Bob", 12L);
+
+        assertThat(KeysetRequest.of(request.getToken(), 10, Sort.unsorted()), equalTo(request));
+    }
+
+    @Test
+    public void next_without_keys_should_return_next_page_by_offset() {
+        Pageable next = new KeysetRequest(10, SORT).next("Bob", 12L).next();
+
+        assertThat(next, instanceOf(OffsetLimitRequest.class));
+        assertThat(next.getOffset(), equalTo(20L));
+        assertThat(next.getPageSize(), equalTo(10));
+        assertThat(next.getSort(), equalTo(SORT));
+    }
+}
@@ -0,0 +1,43 @@
+package net.seesharpsoft.spring.data.domain;
+
+import net.seesharpsoft.spring.data.domain.impl.SqlParserImpl;
+import net.seesharpsoft.spring.data.jpa.expression.Dialects;
+import net.seesharpsoft.spring.test.selectable.CountryInfo;
+import net.seesharpsoft.spring.test.selectable.UserInfo;
+import net.seesharpsoft.spring.test.selectable.UserWithCountryInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SelectableInfoRegistryUT {
+
+    private SelectableInfoRegistry registry;
+
+    @Before
+    public void before() {
+        registry = new SelectableInfoRegistry(new SqlParserImpl(Dialects.SQL.getParser()));
+    }
+
+    @Test
+    public void getSelectableInfo_should_create_info_once() {
+        SelectableInfo<UserInfo> info = registry.getSelectableInfo(UserInfo.class);
+
+        assertThat(info.getSelectableClass(), is(sameInstance((Object) UserInfo.class)));
+        assertThat(registry.getSelectableInfo(UserInfo.class), is(sameInstance(info)));
+    }
+
+    @Test
+    public void register_should_create_all_infos() {
+        registry.register(Arrays.asList(UserInfo.class, UserWithCountryInfo.class, CountryInfo.class));
+
+        assertThat(registry.isRegistered(UserInfo.class), is(true));
+        assertThat(registry.isRegistered(UserWithCountryInfo.class), is(true));
+        assertThat(registry.isRegistered(CountryInfo.class), is(true));
+        assertThat(registry.getSelectableInfo(UserWithCountryInfo.class).getFields().size(), is(4));
+    }
+}
@@ -1,18 +1,24 @@
 package net.seesharpsoft.spring.data.domain;
 
 import net.seesharpsoft.spring.data.domain.impl.SelectableRepositoryFactoryImpl;
+import net.seesharpsoft.spring.data.domain.impl.SelectableRepositoryImpl;
 import net.seesharpsoft.spring.data.domain.impl.SqlParserImpl;
 import net.seesharpsoft.spring.data.jpa.OperationSpecification;
 import net.seesharpsoft.spring.data.jpa.expression.Dialects;
 import net.seesharpsoft.spring.data.jpa.expression.Operands;
 import net.seesharpsoft.spring.data.jpa.expression.Operations;
+import net.seesharpsoft.spring.test.JpaVendorUtilProxyDummy;
 import net.seesharpsoft.spring.test.ObjectMother;
 import net.seesharpsoft.spring.test.TestApplication;
+import net.seesharpsoft.spring.test.model.Country;
 import net.seesharpsoft.spring.test.model.Team;
 import net.seesharpsoft.spring.test.model.User;
+import net.seesharpsoft.spring.test.selectable.CachedUserInfo;
 import net.seesharpsoft.spring.test.selectable.CountryInfo;
+import net.seesharpsoft.spring.test.selectable.UserCountPerCountryInfo;
 import net.seesharpsoft.spring.test.selectable.UserWithCountryInfo;
 import net.seesharpsoft.spring.test.selectable.UserInfo;
+import net.seesharpsoft.spring.test.selectable.UserTeamInfo;
 import org.assertj.core.groups.Tuple;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,17 +26,36 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = TestApplication.class)
@@ -39,7 +64,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class SelectableRepositoryIT {
 
     @Autowired
-    private EntityManager entityManager;
+    protected EntityManager entityManager;
 
     private SelectableRepository selectableRepository;
 
@@ -106,6 +131,68 @@ public class SelectableRepositoryIT {
                 );
     }
 
+    @Test
+    public void should_find_all_with_same_query_shape_and_different_values() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+
+        assertThat(repo.findAll(new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), 1)), Sort.by("id")))
+                .extracting("id")
+                .containsExactly(2, 3, 100);
+        assertThat(repo.findAll(new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), 2)), Sort.by("id")))
+                .extracting("id")
+                .containsExactly(3, 100);
+        assertThat(repo.findAll(new OperationSpecification<>(Operations.equals(Operands.asReference("fullName"), "Bob Y"))))
+                .extracting("id")
+                .containsExactly(2);
+        assertThat(repo.findAll(new OperationSpecification<>(Operations.equals(Operands.asReference("fullName"), "Carla X"))))
+                .extracting("id")
+                .containsExactly(3);
+    }
+
+    @Test
+    public void should_find_all_with_literals() {
+        SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
+        ((SelectableRepositoryImpl) repo).setParameterBinding(false);
+
+        assertThat(repo.findAll(new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), 1)), Sort.by("id")))
+                .extracting("id")
+                .containsExactly(2, 3, 100);
+        assertThat(repo.count(new OperationSpecification<>(Operations.equals(Operands.asReference("fullName"), "Bob Y")))).isEqualTo(1);
+        assertThat(repo.findAll(new KeysetRequest(1, Arrays.asList("Abby Z", 1), 2, Sort.by(Sort.Order.asc("fullName"), Sort.Order.desc("id")))).getContent())
+                .extracting("id")
+                .containsExactly(2, 3);
+    }
+
+    @Test
+    public void should_find_all_by_ids_in_given_order() {
+        SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
+        ((SelectableRepositoryImpl) repo).setIdChunkSize(2);
+
+        assertThat(repo.findAllByIds(Arrays.asList(3, "1", 42, 100, 3, 2)))
+                .extracting("id")
+                .containsExactly(3, 1, 100, 2);
+        assertThat(repo.findAllByIds(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void should_find_all_rows_by_ids_if_joining_collections() {
+        SelectableRepository<UserTeamInfo> repo = getSelectableRepository(UserTeamInfo.class);
+
+        List<UserTeamInfo> resultList = repo.findAllByIds(Arrays.asList(3, 1, 100));
+
+        assertThat(resultList)
+                .extracting("id")
+                .containsExactly(3, 1, 1, 100);
+        assertThat(resultList)
+                .extracting("id", "teamName")
+                .containsExactlyInAnyOrder(
+                        Tuple.tuple(3, "Team B"),
+                        Tuple.tuple(1, "Team A"),
+                        Tuple.tuple(1, "Team B"),
+                        Tuple.tuple(100, null)
+                );
+    }
+
     @Test
     public void should_find_all_sorted() {
         SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
@@ -125,6 +212,151 @@ public class SelectableRepositoryIT {
                 );
     }
 
+    @Test
+    public void should_find_page_sorted_by_entity_paths() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+        Specification<UserInfo> spec = new OperationSpecification<>(Operations.lessThan(Operands.asReference("id"), 100));
+
+        Page<UserInfo> page = repo.findAll(spec, PageRequest.of(0, 2, Sort.by("lastName")));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent())
+                .extracting("id")
+                .containsExactly(3, 2);
+        assertThat(repo.findAll(spec, Sort.by(Sort.Order.desc("country/name"), Sort.Order.asc("id"))))
+                .extracting("id")
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void should_find_page_async_on_calling_thread_without_executor() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+
+        CompletableFuture<Page<UserInfo>> future = repo.findAllAsync(null, PageRequest.of(1, 3, Sort.by("id")));
+
+        assertThat(future).isDone();
+        assertThat(future.join().getTotalElements()).isEqualTo(4);
+        assertThat(future.join().getContent())
+                .extracting("id")
+                .containsExactly(100);
+    }
+
+    @Test
+    public void should_find_page_on_calling_thread_within_transaction() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+        AtomicInteger executions = new AtomicInteger();
+        ((SelectableRepositoryImpl) repo).setExecutor(command -> {
+            executions.incrementAndGet();
+            command.run();
+        });
+
+        CompletableFuture<Page<UserInfo>> future = repo.findAllAsync(null, PageRequest.of(1, 3, Sort.by("id")));
+
+        assertThat(future).isDone();
+        assertThat(future.join().getTotalElements()).isEqualTo(4);
+        assertThat(executions.get()).isEqualTo(0);
+    }
+
+    private SelectableRepositoryImpl<UserInfo> createAsyncRepository(AtomicInteger counts) {
+        return new SelectableRepositoryImpl<UserInfo>(
+                new JpaVendorUtilProxyDummy(), entityManager, new SqlParserImpl(Dialects.SQL.getParser()), UserInfo.class) {
+            @Override
+            protected boolean isAsync() {
+                return true;
+            }
+
+            @Override
+            protected long executeCount(EntityManager queryEntityManager, Specification spec) {
+                counts.incrementAndGet();
+                return super.executeCount(queryEntityManager, spec);
+            }
+        };
+    }
+
+    @Test
+    public void should_count_async_only_if_total_is_unknown() {
+        AtomicInteger counts = new AtomicInteger();
+        SelectableRepositoryImpl<UserInfo> repo = createAsyncRepository(counts);
+        repo.setExecutor(Runnable::run);
+        repo.setParallelCount(false);
+
+        // the entity manager of the executor does not see the uncommitted test data
+        assertThat(repo.findAllAsync(null, PageRequest.of(0, 3)).join().getTotalElements()).isEqualTo(0);
+        assertThat(counts.get()).isEqualTo(0);
+        assertThat(repo.findAllAsync(null, Pageable.unpaged()).join().getTotalElements()).isEqualTo(0);
+        assertThat(counts.get()).isEqualTo(0);
+        assertThat(repo.findAllAsync(null, PageRequest.of(1, 3)).join().getTotalElements()).isEqualTo(0);
+        assertThat(counts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_count_in_parallel_and_skip_count_not_needed() {
+        AtomicInteger counts = new AtomicInteger();
+        SelectableRepositoryImpl<UserInfo> repo = createAsyncRepository(counts);
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        repo.setExecutor(tasks::add);
+
+        CompletableFuture<Page<UserInfo>> future = repo.findAllAsync(null, PageRequest.of(0, 3));
+        // rows and count are started at once
+        assertThat(tasks).hasSize(2);
+        tasks.poll().run();
+        assertThat(future).isDone();
+        tasks.poll().run();
+        assertThat(counts.get()).isEqualTo(0);
+
+        future = repo.findAllAsync(null, PageRequest.of(1, 3));
+        assertThat(tasks).hasSize(2);
+        tasks.poll().run();
+        assertThat(future).isNotDone();
+        tasks.poll().run();
+        // the entity manager of the executor does not see the uncommitted test data
+        assertThat(future.join().getTotalElements()).isEqualTo(0);
+        assertThat(counts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_return_copies_of_cached_results() {
+        SelectableRepository<CachedUserInfo> repo = new SelectableRepositoryFactoryImpl(entityManager, new SqlParserImpl(Dialects.SQL.getParser()))
+                .createRepository(CachedUserInfo.class);
+        Specification<CachedUserInfo> spec = new OperationSpecification<>(Operations.lessThan(Operands.asReference("id"), 100));
+
+        List<CachedUserInfo> resultList = repo.findAll(spec);
+        resultList.clear();
+        resultList = repo.findAll(spec);
+
+        assertThat(resultList).hasSize(3);
+        // the rows are shared between callers
+        assertThat(repo.findAll(spec).get(0)).isSameAs(resultList.get(0));
+
+        Page<CachedUserInfo> page = repo.findAll(spec, PageRequest.of(0, 2, Sort.by("id")));
+        Page<CachedUserInfo> cachedPage = repo.findAll(spec, PageRequest.of(0, 2, Sort.by("id")));
+
+        assertThat(cachedPage).isNotSameAs(page);
+        assertThat(cachedPage.getTotalElements()).isEqualTo(3);
+        assertThat(cachedPage.getContent()).containsExactlyElementsOf(page.getContent());
+        assertThat(((SelectableRepositoryImpl) repo).getResultCacheHitCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_cache_results_until_evicted() {
+        SelectableRepository<CachedUserInfo> repo = new SelectableRepositoryFactoryImpl(entityManager, new SqlParserImpl(Dialects.SQL.getParser()))
+                .createRepository(CachedUserInfo.class);
+        Specification<CachedUserInfo> spec = new OperationSpecification<>(Operations.lessThan(Operands.asReference("id"), 100));
+
+        assertThat(repo.count(spec)).isEqualTo(3);
+        entityManager.remove(entityManager.find(User.class, 3));
+        entityManager.flush();
+
+        assertThat(repo.count(spec)).isEqualTo(3);
+        assertThat(repo.count(new OperationSpecification<>(Operations.lessThan(Operands.asReference("id"), 4)))).isEqualTo(2);
+        repo.evictCachedResults(Team.class);
+        assertThat(repo.count(spec)).isEqualTo(3);
+        repo.evictCachedResults(Country.class);
+        assertThat(repo.count(spec)).isEqualTo(2);
+        assertThat(((SelectableRepositoryImpl) repo).getResultCacheHitCount()).isEqualTo(2);
+        assertThat(((SelectableRepositoryImpl) repo).getResultCacheHitRate()).isEqualTo(0.4);
+    }
+
     @Test
     public void should_find_all_with_join() {
         SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
@@ -170,4 +402,202 @@ public class SelectableRepositoryIT {
                 .extracting("id", "name", "userCount", "teamCount")
                 .containsExactly(abby.getCountry().getId(), abby.getCountry().getName(), 2L, 2L);
     }
+
+    @Test
+    public void should_count() {
+        assertThat(getSelectableRepository(UserInfo.class).count(null)).isEqualTo(4);
+        assertThat(getSelectableRepository(UserInfo.class).count(
+                new OperationSpecification<>(Operations.not(Operations.equals(Operands.asReference("mail"), null)))
+        )).isEqualTo(3);
+        assertThat(getSelectableRepository(UserWithCountryInfo.class).count(
+                new OperationSpecification<>(Operations.equals(Operands.asReference("country"), abby.getCountry().getName()))
+        )).isEqualTo(2);
+        assertThat(getSelectableRepository(CountryInfo.class).count(null)).isEqualTo(2);
+    }
+
+    @Test
+    public void should_count_groups() {
+        SelectableRepository<UserCountPerCountryInfo> repo = getSelectableRepository(UserCountPerCountryInfo.class);
+
+        assertThat(repo.count(null)).isEqualTo(3);
+        assertThat(repo.count(null)).isEqualTo(repo.findAll().size());
+    }
+
+    @Test
+    public void should_find_page_with_total() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+
+        Page<UserInfo> page = repo.findAll(PageRequest.of(0, 2, Sort.by("id")));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getTotalPages()).isEqualTo(2);
+        assertThat(page.getContent())
+                .extracting("id")
+                .containsExactly(1, 2);
+
+        page = repo.findAll(PageRequest.of(1, 3, Sort.by("id")));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent())
+                .extracting("id")
+                .containsExactly(100);
+    }
+
+    @Test
+    public void should_find_pages_by_keyset() {
+        SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
+        KeysetRequest request = new KeysetRequest(2, Sort.by(Sort.Order.asc("fullName"), Sort.Order.desc("id")));
+
+        Page<UserWithCountryInfo> page = repo.findAll(request);
+
+        assertThat(page.getContent())
+                .extracting("id", "fullName")
+                .containsExactly(
+                        Tuple.tuple(100, null),
+                        Tuple.tuple(1, "Abby Z")
+                );
+
+        assertThat(page.nextPageable()).isEqualTo(request.next("Abby Z", 1));
+
+        page = repo.findAll(KeysetRequest.of(((KeysetRequest) page.nextPageable()).getToken(), 2, request.getSort()));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent())
+                .extracting("id", "fullName", "countrySharingUserCount")
+                .containsExactly(
+                        Tuple.tuple(2, "Bob Y", 2L),
+                        Tuple.tuple(3, "Carla X", 1L)
+                );
+        assertThat(page.hasNext()).isFalse();
+        assertThat(page.nextPageable().isUnpaged()).isTrue();
+    }
+
+    @Test
+    public void should_find_pages_by_keyset_on_aggregate() {
+        SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
+
+        Page<UserWithCountryInfo> page = repo.findAll(
+                new KeysetRequest(1, Arrays.asList(2L, 2), 10, Sort.by(Sort.Order.desc("countrySharingUserCount"), Sort.Order.desc("id")))
+        );
+
+        assertThat(page.getContent())
+                .extracting("id")
+                .containsExactly(1, 3, 100);
+    }
+
+    @Test
+    public void should_reject_keyset_keys_not_matching_sort_types() {
+        SelectableRepository<UserWithCountryInfo> repo = getSelectableRepository(UserWithCountryInfo.class);
+        Sort sort = Sort.by(Sort.Order.asc("fullName"), Sort.Order.desc("id"));
+
+        assertThatThrownBy(() -> repo.findAll(KeysetRequest.of(new KeysetRequest(1, Arrays.asList("Abby Z", "1"), 2, sort).getToken(), 2, sort)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("sort property 'id'");
+
+        assertThat(repo.findAll(new KeysetRequest(1, Arrays.asList("Abby Z", 1), 2, sort)).getContent())
+                .extracting("id")
+                .containsExactly(2, 3);
+    }
+
+    @Test
+    public void should_stream_all() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+
+        List<UserInfo> resultList;
+        try (Stream<UserInfo> stream = repo.streamAll(
+                new OperationSpecification<>(Operations.not(Operations.equals(Operands.asReference("mail"), null))),
+                Sort.by(Sort.Direction.DESC, "id"))) {
+            resultList = stream.collect(Collectors.toList());
+        }
+
+        assertThat(resultList)
+                .extracting("id", "fullName")
+                .containsExactly(
+                        Tuple.tuple(3, "Carla X"),
+                        Tuple.tuple(2, "Bob Y"),
+                        Tuple.tuple(1, "Abby Z")
+                );
+    }
+
+    @Test
+    public void should_stream_all_to_consumer() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+        ((SelectableRepositoryImpl) repo).setFetchSize(1);
+        ((SelectableRepositoryImpl) repo).setClearInterval(1);
+        List<UserInfo> resultList = new ArrayList<>();
+
+        repo.streamAll(null, Sort.by("id"), resultList::add);
+
+        assertThat(resultList)
+                .extracting("id")
+                .containsExactly(1, 2, 3, 100);
+    }
+
+    @Test
+    public void should_keep_pending_changes_when_clearing_while_streaming() {
+        SelectableRepository<UserInfo> repo = getSelectableRepository(UserInfo.class);
+        ((SelectableRepositoryImpl) repo).setFetchSize(1);
+        ((SelectableRepositoryImpl) repo).setClearInterval(1);
+        entityManager.find(Country.class, 1).setName("Deutschland");
+        List<UserInfo> resultList = new ArrayList<>();
+
+        repo.streamAll(null, Sort.by("id"), resultList::add);
+
+        assertThat(resultList).hasSize(4);
+        assertThat(entityManager.find(Country.class, 1).getName()).isEqualTo("Deutschland");
+    }
+
+    @Test
+    public void should_find_all_concurrently_with_cached_query() throws Exception {
+        SelectableRepository<UserWithCountryInfo> repo = new SelectableRepositoryFactoryImpl(entityManager, new SqlParserImpl(Dialects.SQL.getParser()))
+                .createRepository(UserWithCountryInfo.class);
+        int threads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<UserWithCountryInfo>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                int id = i % 3;
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    List<UserWithCountryInfo> result = null;
+                    for (int j = 0; j < 20; ++j) {
+                        result = repo.findAll(new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), id)), Sort.by("id"));
+                    }
+                    return result;
+                }));
+            }
+            start.countDown();
+            for (Future<List<UserWithCountryInfo>> future : futures) {
+                // the test data is not committed, other threads see no rows
+                assertThat(future.get(30, TimeUnit.SECONDS)).isEmpty();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(repo.findAll(new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), 1)), Sort.by("id")))
+                .extracting("id")
+                .containsExactly(2, 3, 100);
+    }
+
+    @Test
+    public void should_alias_all_roots_and_joins_before_sharing_query() {
+        List<String> aliases = new ArrayList<>();
+        SelectableRepository<UserWithCountryInfo> repo = new SelectableRepositoryImpl<UserWithCountryInfo>(
+                new JpaVendorUtilProxyDummy(), entityManager, new SqlParserImpl(Dialects.SQL.getParser()), UserWithCountryInfo.class) {
+            @Override
+            protected void prepareForSharing(CriteriaQuery<?> query) {
+                super.prepareForSharing(query);
+                for (Root<?> root : query.getRoots()) {
+                    aliases.add(root.getAlias());
+                    Operands.getAllJoins(root).forEach(join -> aliases.add(join.getAlias()));
+                }
+            }
+        };
+
+        repo.findAll(new OperationSpecification<>(Operations.greaterThan(Operands.asReference("id"), 1)), Sort.by("id"));
+
+        assertThat(aliases).isNotEmpty().doesNotContainNull();
+    }
 }
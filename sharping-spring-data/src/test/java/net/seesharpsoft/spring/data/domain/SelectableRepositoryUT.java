@@ -0,0 +1,94 @@
+package net.seesharpsoft.spring.data.domain;
+
+import org.junit.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SelectableRepositoryUT {
+
+    /**
+     * Implements the methods of the specification executor only - everything else is left to the defaults.
+     */
+    private static class ListRepository implements SelectableRepository<String> {
+        private final List<String> rows;
+        private Sort lastSort;
+
+        private ListRepository(String... rows) {
+            this.rows = Arrays.asList(rows);
+        }
+
+        @Override
+        public Optional<String> findOne(Specification<String> spec) {
+            return rows.stream().findFirst();
+        }
+
+        @Override
+        public List<String> findAll(Specification<String> spec) {
+            return new ArrayList<>(rows);
+        }
+
+        @Override
+        public Page<String> findAll(Specification<String> spec, Pageable pageable) {
+            return new PageImpl<>(findAll(spec), pageable, rows.size());
+        }
+
+        @Override
+        public List<String> findAll(Specification<String> spec, Sort sort) {
+            lastSort = sort;
+            return findAll(spec);
+        }
+
+        @Override
+        public long count(Specification<String> spec) {
+            return rows.size();
+        }
+    }
+
+    @Test
+    public void streamAll_should_stream_rows_of_findAll_by_default() {
+        ListRepository repository = new ListRepository("a", "b");
+
+        try (Stream<String> stream = repository.streamAll(null, null)) {
+            assertThat(stream.collect(Collectors.toList()), contains("a", "b"));
+        }
+        assertThat(repository.lastSort, equalTo(Sort.unsorted()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void findAllByIds_should_not_be_supported_by_default() {
+        new ListRepository("a").findAllByIds(Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void findAllAsync_should_complete_with_page_of_findAll_by_default() {
+        ListRepository repository = new ListRepository("a", "b");
+
+        Page<String> page = repository.findAllAsync(null, null).join();
+
+        assertThat(page.getContent(), contains("a", "b"));
+        assertThat(page.getPageable().isUnpaged(), is(true));
+    }
+
+    @Test
+    public void evictCachedResults_should_do_nothing_by_default() {
+        ListRepository repository = new ListRepository("a");
+
+        repository.evictCachedResults();
+        repository.evictCachedResults(String.class);
+
+        assertThat(repository.findAll(), contains("a"));
+    }
+}
@@ -14,9 +14,11 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.text.ParseException;
+import java.util.Arrays;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 
 public class OperationSpecificationUT {
 
@@ -54,4 +56,17 @@ public class OperationSpecificationUT {
         Predicate predicate = specification.toPredicate(root, query, builder);
         assertThat(predicate.toString(), is("and(and(not(isNull(fString)), equal(fString, 'eq < ne')), or(lessThan(fInteger, '3'), or(greaterThanOrEqualTo(fDouble, '123'), not(not(equal(fInteger, quot(fDouble, '4')))))))"));
     }
+
+    @Test
+    public void parameterize_should_collect_values() throws ParseException {
+        Parser parser = new Parser(Dialects.JAVA);
+        OperationSpecification specification = new OperationSpecification(parser.parseExpression("fString == 'abc' && fInteger < 3"));
+
+        OperationSpecification parameterized = specification.parameterize();
+
+        assertThat(parameterized.getParameterValues(), is(Arrays.asList("abc", 3)));
+        assertThat(parameterized, is(new OperationSpecification(parser.parseExpression("fString == 'xyz' && fInteger < 5")).parameterize()));
+        assertThat(parameterized, is(not(specification)));
+        assertThat(specification.getParameterValues().isEmpty(), is(true));
+    }
 }
@@ -0,0 +1,144 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import net.seesharpsoft.spring.data.jpa.expression.OperationCompilerUT.Address;
+import net.seesharpsoft.spring.data.jpa.expression.OperationCompilerUT.Person;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ColumnBatchUT {
+
+    private static final String[] EXPRESSIONS = {
+            "age gt 30",
+            "age le 30 and id ne 7",
+            "not (age lt 18) or active eq false",
+            "score ge 0.5 and score lt 2",
+            "id eq 42 or id gt 190",
+            "age gt id",
+            "active",
+            "active eq (age gt 50)",
+            "rank lt 3",
+            "rank eq null or rank eq 2",
+            "name eq 'Anna'",
+            "startswith(name, 'A') and not endswith(name, '1')",
+            "substring(name, '7') or address/city eq 'Berlin'",
+            "address/city ne null and age add 5 gt 40",
+            "age mod 3 eq 0 and score gt 1.5",
+            "name lt 'C'",
+            "30 lt age and 2 ge score",
+            "'B' le name or 1 eq rank",
+            "age gt 2147483647 or id le 2147483647",
+            "id gt 150L or age eq 40L or age lt 10.5"
+    };
+
+    private static List<Person> createPersons(int count) {
+        Random random = new Random(4711);
+        String[] cities = {"Berlin", "Paris", null};
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            String city = cities[random.nextInt(cities.length)];
+            persons.add(new Person(i, (char) ('A' + random.nextInt(4)) + "nn" + i, random.nextInt(90), random.nextInt(12) / 4.0,
+                    random.nextBoolean(), random.nextInt(4) == 0 ? null : random.nextInt(5), city == null ? null : new Address(city)));
+        }
+        return persons;
+    }
+
+    @Test
+    public void select_should_match_compiled_predicate() throws ParseException {
+        OperationCompiler compiler = new OperationCompiler();
+        for (int count : new int[]{0, 1, 63, 64, 65, 200}) {
+            List<Person> persons = createPersons(count);
+            ColumnBatch<Person> batch = new ColumnBatch<>(persons, Person.class, compiler);
+            for (String expression : EXPRESSIONS) {
+                Operand operand = Dialects.ODATA.getParser().parseExpression(expression);
+                Predicate<Person> predicate = compiler.compilePredicate(operand, Person.class);
+                List<Person> expected = persons.stream().filter(predicate).collect(Collectors.toList());
+                assertThat(String.format("%s over %s rows", expression, count), batch.select(operand), is(expected));
+                assertThat(batch.filter(operand).cardinality(), is(expected.size()));
+                assertThat(String.format("%s over %s rows", expression, count), batch.selectCompiled(predicate), is(expected));
+                assertThat(batch.filterCompiled(predicate).cardinality(), is(expected.size()));
+            }
+        }
+    }
+
+    @Test
+    public void indexed_select_should_match_compiled_predicate() throws ParseException {
+        OperationCompiler compiler = new OperationCompiler();
+        String[] indexedExpressions = {"30 lt age", "age ge 30 and age le 40", "rank ge 2", "rank eq 3 and active",
+                "name ge 'B' and age le 40", "score eq 1.5", "id eq 42", "address/city lt 'C'", "score gt 1 and id lt 100"};
+        for (int count : new int[]{0, 1, 65, 200}) {
+            List<Person> persons = createPersons(count);
+            ColumnBatch<Person> batch = new ColumnBatch<>(persons, Person.class, compiler);
+            for (String field : new String[]{"id", "age", "score", "rank", "name", "address/city"}) {
+                batch.addIndex(field);
+            }
+            assertThat(batch.hasIndex("age"), is(true));
+            for (String expression : indexedExpressions) {
+                Operand operand = Dialects.ODATA.getParser().parseExpression(expression);
+                List<Person> expected = persons.stream().filter(compiler.compilePredicate(operand, Person.class)).collect(Collectors.toList());
+                assertThat(String.format("%s over %s rows", expression, count), batch.select(operand), is(expected));
+            }
+            for (String expression : EXPRESSIONS) {
+                Operand operand = Dialects.ODATA.getParser().parseExpression(expression);
+                List<Person> expected = persons.stream().filter(compiler.compilePredicate(operand, Person.class)).collect(Collectors.toList());
+                assertThat(String.format("%s over %s rows", expression, count), batch.select(operand), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void index_should_narrow_rows_before_evaluation() throws ParseException {
+        List<Person> persons = Arrays.asList(
+                new Person(1, "Alice", 0, 1.5, true, 3, null),
+                new Person(2, "Bob", 4, 0.5, false, null, null));
+        ColumnBatch<Person> batch = new ColumnBatch<>(persons, Person.class);
+        batch.addIndex("age");
+
+        // division by zero would fail for Alice if the index was not used
+        assertThat(batch.select(Dialects.ODATA.getParser().parseExpression("8 div age eq 2 and age gt 0")), contains(persons.get(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selectCompiled_should_fail_on_predicate_not_compiled() {
+        new ColumnBatch<>(createPersons(3), Person.class).selectCompiled(person -> true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addIndex_should_fail_on_unknown_field() {
+        new ColumnBatch<>(createPersons(3), Person.class).addIndex("unknown");
+    }
+
+    @Test
+    public void filter_should_return_selected_rows() throws ParseException {
+        List<Person> persons = Arrays.asList(
+                new Person(1, "Alice", 34, 1.5, true, 3, new Address("Berlin")),
+                new Person(2, "Bob", 17, 0.5, false, null, null),
+                new Person(3, "Anna", 65, 2.75, true, 1, new Address("Paris")));
+        ColumnBatch<Person> batch = new ColumnBatch<>(persons, Person.class);
+
+        assertThat(batch.size(), is(3));
+        assertThat(batch.filter(Dialects.ODATA.getParser().parseExpression("age gt 30")).toString(), is("{0, 2}"));
+        assertThat(batch.filter(Dialects.ODATA.getParser().parseExpression("not (age gt 30)")).toString(), is("{1}"));
+        assertThat(batch.filter(Dialects.ODATA.getParser().parseExpression("age gt 30 and rank eq 1")).toString(), is("{2}"));
+    }
+
+    @Test
+    public void and_should_not_evaluate_rows_already_rejected() throws ParseException {
+        List<Person> persons = Arrays.asList(
+                new Person(1, "Alice", 0, 1.5, true, 3, null),
+                new Person(2, "Bob", 4, 0.5, false, null, null));
+        ColumnBatch<Person> batch = new ColumnBatch<>(persons, Person.class);
+
+        // division by zero would fail for Alice
+        assertThat(batch.select(Dialects.ODATA.getParser().parseExpression("age gt 0 and 8 div age eq 2")), contains(persons.get(1)));
+    }
+}
@@ -0,0 +1,104 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Filtering of in-memory objects with a compiled filter expression - node tree and columnar - compared to the equivalent hand-written predicate.
+ * Run via main method or the JMH runner: {@code java -cp <test-classpath> org.openjdk.jmh.Main OperationCompilerBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperationCompilerBenchmark {
+
+    public static class Person {
+        private final String name;
+        private final int age;
+        private final long id;
+
+        public Person(long id, String name, int age) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+
+    public static final String FILTER = "(age gt 30) and startswith(name, 'A') and id ne 7";
+
+    private List<Person> persons;
+    private Predicate<Person> compiled;
+    private Predicate<Person> handWritten;
+    private Operand filter;
+    private ColumnBatch<Person> batch;
+
+    @Setup
+    public void setup() throws ParseException {
+        Random random = new Random(42);
+        persons = new ArrayList<>();
+        for (int i = 0; i < 100000; ++i) {
+            persons.add(new Person(i, (char) ('A' + random.nextInt(26)) + "name" + i, random.nextInt(90)));
+        }
+        compiled = new OperationCompiler().compilePredicate(Dialects.ODATA.getParser().parseExpression(FILTER), Person.class);
+        filter = Dialects.ODATA.getParser().parseExpression(FILTER);
+        batch = new ColumnBatch<>(persons, Person.class);
+        handWritten = person -> person.getAge() > 30 && person.getName().startsWith("A") && person.getId() != 7;
+    }
+
+    private static int count(List<Person> persons, Predicate<Person> predicate) {
+        int count = 0;
+        for (Person person : persons) {
+            if (predicate.test(person)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int compiled() {
+        return count(persons, compiled);
+    }
+
+    @Benchmark
+    public int columnar() {
+        return batch.filter(filter).cardinality();
+    }
+
+    @Benchmark
+    public int handWritten() {
+        return count(persons, handWritten);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OperationCompilerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,174 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class OperationCompilerUT {
+
+    public static class Address {
+        private String city;
+
+        public Address(String city) {
+            this.city = city;
+        }
+
+        public String getCity() {
+            return city;
+        }
+    }
+
+    public static class Person {
+        private String name;
+        private int age;
+        private long id;
+        private double score;
+        private boolean active;
+        private Integer rank;
+        private Address address;
+
+        public Person(long id, String name, int age, double score, boolean active, Integer rank, Address address) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+            this.score = score;
+            this.active = active;
+            this.rank = rank;
+            this.address = address;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public Integer getRank() {
+            return rank;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+    }
+
+    private static final List<Person> PERSONS = Arrays.asList(
+            new Person(1, "Alice", 34, 1.5, true, 3, new Address("Berlin")),
+            new Person(2, "Bob", 17, 0.5, false, null, null),
+            new Person(3, "Anna", 65, 2.75, true, 1, new Address("Paris")),
+            new Person(4, "Carl", 30, 0.0, true, 2, new Address("Berlin"))
+    );
+
+    private final OperationCompiler compiler = new OperationCompiler();
+
+    private List<String> filter(Dialect dialect, String expression) throws ParseException {
+        Predicate<Person> predicate = compiler.compilePredicate(dialect.getParser().parseExpression(expression), Person.class);
+        return PERSONS.stream().filter(predicate).map(Person::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void compilePredicate_should_compare_primitive_fields() throws ParseException {
+        assertThat(filter(Dialects.ODATA, "age gt 30"), contains("Alice", "Anna"));
+        assertThat(filter(Dialects.ODATA, "age ge 30 and age le 34"), contains("Alice", "Carl"));
+        assertThat(filter(Dialects.ODATA, "id eq 2 or id eq 4"), contains("Bob", "Carl"));
+        assertThat(filter(Dialects.ODATA, "score lt 1"), contains("Bob", "Carl"));
+        assertThat(filter(Dialects.ODATA, "score ne 1.5"), contains("Bob", "Anna", "Carl"));
+    }
+
+    @Test
+    public void compilePredicate_should_handle_booleans_and_not() throws ParseException {
+        assertThat(filter(Dialects.ODATA, "active eq true"), contains("Alice", "Anna", "Carl"));
+        assertThat(filter(Dialects.ODATA, "not (active eq true)"), contains("Bob"));
+        assertThat(filter(Dialects.JAVA, "!active"), contains("Bob"));
+    }
+
+    @Test
+    public void compilePredicate_should_handle_strings() throws ParseException {
+        assertThat(filter(Dialects.ODATA, "name eq 'Bob'"), contains("Bob"));
+        assertThat(filter(Dialects.ODATA, "startswith(name, 'A')"), contains("Alice", "Anna"));
+        assertThat(filter(Dialects.ODATA, "endswith(name, 'l')"), contains("Carl"));
+        assertThat(filter(Dialects.ODATA, "substring(name, 'nn')"), contains("Anna"));
+        assertThat(filter(Dialects.ODATA, "startswith(name, 'A') and age gt 40"), contains("Anna"));
+    }
+
+    @Test
+    public void compilePredicate_should_handle_nullable_fields_and_paths() throws ParseException {
+        assertThat(filter(Dialects.ODATA, "rank eq null"), contains("Bob"));
+        assertThat(filter(Dialects.ODATA, "rank lt 3"), contains("Anna", "Carl"));
+        assertThat(filter(Dialects.ODATA, "address/city eq 'Berlin'"), contains("Alice", "Carl"));
+        assertThat(filter(Dialects.ODATA, "address/city eq null"), contains("Bob"));
+    }
+
+    @Test
+    public void compilePredicate_should_handle_arithmetic() throws ParseException {
+        assertThat(filter(Dialects.ODATA, "age add 10 gt 40"), contains("Alice", "Anna"));
+        assertThat(filter(Dialects.ODATA, "age mod 2 eq 0"), contains("Alice", "Carl"));
+        assertThat(filter(Dialects.SQL, "age * 2 - 1 = 59"), contains("Carl"));
+    }
+
+    @Test
+    public void compileFunction_should_return_values() throws ParseException {
+        Function<Person, Object> function = compiler.compileFunction(Dialects.SHARP.getParser().parseExpression("if(active, name, 'inactive')"), Person.class);
+        assertThat(PERSONS.stream().map(function).collect(Collectors.toList()), contains("Alice", "inactive", "Anna", "Carl"));
+
+        function = compiler.compileFunction(Dialects.SHARP.getParser().parseExpression("age + 1"), Person.class);
+        assertThat(function.apply(PERSONS.get(0)), is(35));
+    }
+
+    @Test
+    public void arithmetic_should_match_operators() {
+        Object[] values = {0, 1, -1, 2, 7, -7, 13, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                3L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, (1L << 53) + 1, 0.5, -2.0, 4.0, 1e300, Double.NaN};
+        Operator[] operators = {Operators.ADD, Operators.SUB, Operators.MUL, Operators.DIV, Operators.MOD};
+        for (Operator operator : operators) {
+            for (Object x : values) {
+                for (Object y : values) {
+                    Object expected;
+                    try {
+                        expected = operator.evaluate(x, y);
+                    } catch (ArithmeticException exc) {
+                        expected = ArithmeticException.class;
+                    }
+                    Object actual;
+                    try {
+                        actual = compiler.compileFunction(new Operations.Binary(operator, x, y), Object.class).apply(null);
+                    } catch (ArithmeticException exc) {
+                        actual = ArithmeticException.class;
+                    }
+                    assertThat(String.format("%s %s %s", x, operator, y), actual, is(expected));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compilePredicate_should_fail_for_unknown_fields() throws ParseException {
+        compiler.compilePredicate(Dialects.ODATA.getParser().parseExpression("unknown eq 1"), Person.class);
+    }
+
+    @Test
+    public void compile_should_reuse_field_nodes_per_class() {
+        OperationCompiler.Node node = compiler.compile(Operands.asReference("address/city"), Person.class);
+
+        assertThat(compiler.compile(Operands.asReference("address/city"), Person.class), is(sameInstance(node)));
+        assertThat(compiler.compile(Operands.asReference("city"), Address.class), is(not(sameInstance(node))));
+    }
+}
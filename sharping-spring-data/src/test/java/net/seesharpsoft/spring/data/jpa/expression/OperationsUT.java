@@ -2,8 +2,13 @@ package net.seesharpsoft.spring.data.jpa.expression;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 
 
 public class OperationsUT {
@@ -20,4 +25,32 @@ public class OperationsUT {
         assertThat(Operations.equals(3.0d, 3).evaluate(), is(false));
         assertThat(Operations.equals(42, 42).evaluate(), is(true));
     }
+
+    @Test
+    public void parameterize_should_replace_values_by_parameters() {
+        List<Object> values = new ArrayList<>();
+        Operation operation = Operations.parameterize(
+                Operations.and(Operations.equals(Operands.asReference("name"), "Abby"), Operations.greaterThan(Operands.asReference("id"), 3)), values);
+
+        assertThat(operation.toString(), is("(({name} == :operandValue0) && ({id} > :operandValue1))"));
+        assertThat(values, is(Arrays.asList("Abby", 3)));
+    }
+
+    @Test
+    public void parameterize_should_create_equal_operations_for_same_shape() {
+        Operation first = Operations.parameterize(Operations.equals(Operands.asReference("id"), 1), new ArrayList<>());
+
+        assertThat(Operations.parameterize(Operations.equals(Operands.asReference("id"), 2), new ArrayList<>()), is(first));
+        assertThat(Operations.parameterize(Operations.equals(Operands.asReference("id"), 2L), new ArrayList<>()), is(not(first)));
+        assertThat(Operations.parameterize(Operations.equals(Operands.asReference("id"), null), new ArrayList<>()), is(not(first)));
+    }
+
+    @Test
+    public void parameterize_should_keep_like_patterns() {
+        List<Object> values = new ArrayList<>();
+        Operation operation = Operations.parameterize(new Operations.Binary(Operators.STARTS_WITH, Operands.asReference("name"), "A"), values);
+
+        assertThat(operation, is(new Operations.Binary(Operators.STARTS_WITH, Operands.asReference("name"), "A")));
+        assertThat(values.isEmpty(), is(true));
+    }
 }
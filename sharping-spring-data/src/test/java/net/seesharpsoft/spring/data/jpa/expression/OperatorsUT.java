@@ -111,7 +111,7 @@ public class OperatorsUT {
         Map<Operator, List> operatorResultMap = new HashMap<>();
         operatorResultMap.put(Operators.ADD, Arrays.asList(4, 5.0, 3, 0, 9f, 4, 2));
         operatorResultMap.put(Operators.SUB, Arrays.asList(0, -1.0, -3, 0, -11f, 4, 6));
-        operatorResultMap.put(Operators.DIV, Arrays.asList(1, BigDecimal.valueOf(2.0).divide(BigDecimal.valueOf(3), Operators.Numerical.MATH_CONTEXT).doubleValue(), 0, null, -1f/10, null, -2));
+        operatorResultMap.put(Operators.DIV, Arrays.asList(1, 2.0 / 3, 0, null, -1f/10, null, -2));
         operatorResultMap.put(Operators.MUL, Arrays.asList(4, 6.0, 0, 0, -10f, 0, -8));
         operatorResultMap.put(Operators.MOD, Arrays.asList(0, 2.0, 0, null, -1f, null, 0));
 
@@ -133,4 +133,52 @@ public class OperatorsUT {
                     }
                 });
     }
+
+    @Test
+    public void numerical_operators_should_keep_long_precision() {
+        assertThat(Operators.ADD.evaluate(Long.MAX_VALUE - 1, 1), is(Long.MAX_VALUE));
+        assertThat(Operators.SUB.evaluate((1L << 53) + 1, 1L), is(1L << 53));
+        assertThat(Operators.MOD.evaluate(Long.MAX_VALUE, 10L), is(7L));
+        assertThat(Operators.DIV.evaluate(Long.MIN_VALUE, 2L), is(Long.MIN_VALUE / 2));
+    }
+
+    @Test
+    public void numerical_operators_should_fail_on_overflow_and_rounding() {
+        Object[][] inputs = {
+                {Operators.ADD, Integer.MAX_VALUE, 1},
+                {Operators.MUL, Long.MAX_VALUE, 2L},
+                {Operators.DIV, Long.MIN_VALUE, -1L},
+                {Operators.DIV, 7, 2},
+                {Operators.ADD, 1, 0.5},
+                {Operators.ADD, (short) 32767, 1},
+                {Operators.DIV, 1.0, 0}
+        };
+        for (Object[] input : inputs) {
+            boolean failed = false;
+            try {
+                ((Operator) input[0]).evaluate(input[1], input[2]);
+            } catch (ArithmeticException exc) {
+                failed = true;
+            }
+            assertThat(String.format("%s(%s, %s) should fail", input[0], input[1], input[2]), failed, is(true));
+        }
+    }
+
+    @Test
+    public void numerical_operators_should_use_big_decimal_only_for_big_decimal_operands() {
+        assertThat(Operators.ADD.evaluate(new BigDecimal("0.1"), new BigDecimal("0.2")), is(new BigDecimal("0.3")));
+        assertThat(Operators.MUL.evaluate(new BigDecimal("1.25"), 2), is(new BigDecimal("2.50")));
+        assertThat(Operators.ADD.evaluate(0.1, 0.2), is(0.1 + 0.2));
+    }
+
+    @Test
+    public void comparison_operators_should_compare_mixed_numbers() {
+        assertThat(Operators.GREATER_THAN.evaluate(2L, 1), is(true));
+        assertThat(Operators.LESS_THAN.evaluate(1, 1.5), is(true));
+        assertThat(Operators.GREATER_THAN.evaluate((1L << 53) + 1, (double) (1L << 53)), is(true));
+        assertThat(Operators.LESS_THAN_OR_EQUALS.evaluate(Long.MAX_VALUE, 0x1p63), is(true));
+        assertThat(Operators.GREATER_THAN_OR_EQUALS.evaluate(-2.5, -3L), is(true));
+        assertThat(Operators.LESS_THAN.evaluate(new BigDecimal("1.5"), 2), is(true));
+        assertThat(Operators.GREATER_THAN.evaluate(Double.NaN, Long.MAX_VALUE), is(true));
+    }
 }
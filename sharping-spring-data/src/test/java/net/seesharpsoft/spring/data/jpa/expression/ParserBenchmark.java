@@ -0,0 +1,68 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the shared dialect parsers with an increasing number of threads - the score should scale with the number of threads up to the available cores.
+ * Run via main method or the JMH runner: {@code java -cp <test-classpath> org.openjdk.jmh.Main ParserBenchmark -t <threads>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String FILTER = "name eq 'abc' and (age gt 18 or age lt 65) and not (status eq 'inactive') and score ge 1.5";
+
+    private Parser sqlParser;
+    private Parser odataParser;
+
+    @Setup
+    public void setup() throws ParseException {
+        sqlParser = Dialects.SQL.getParser();
+        odataParser = Dialects.ODATA.getParser();
+        // initialize lexers
+        sqlParser.parseExpression("a");
+        odataParser.parseExpression("a");
+    }
+
+    @Benchmark
+    public Operand sql() throws ParseException {
+        return sqlParser.parseExpression("count_distinct(a.id) > 10 AND (b.name = 'test' OR startswith(c, 'abc')) AND not (d.value + 3 * e <= 42)");
+    }
+
+    @Benchmark
+    public Operand filter() throws ParseException {
+        return odataParser.parseExpression(FILTER);
+    }
+
+    @Benchmark
+    public Object filterTokenizeOnly() throws ParseException {
+        return odataParser.tokenizeStream(FILTER);
+    }
+
+    @Benchmark
+    public Operand odata() throws ParseException {
+        return odataParser.parseExpression("a eq 'eq lt ne' AND (b lt 3 or c gt '123' or not (a/b in [test,test2]))");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(ParserBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
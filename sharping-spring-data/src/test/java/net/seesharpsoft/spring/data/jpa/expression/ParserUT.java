@@ -1,5 +1,6 @@
 package net.seesharpsoft.spring.data.jpa.expression;
 
+import net.seesharpsoft.commons.collection.LruCache;
 import net.seesharpsoft.commons.util.Tokenizer;
 import net.seesharpsoft.spring.data.jpa.expression.Dialect.Token;
 import org.junit.Test;
@@ -114,4 +115,72 @@ public class ParserUT {
         assertThat(operation.toString(), is("(count {a} as {countA})"));
     }
 
+    @Test
+    public void parseExpression_should_return_cached_operation() throws ParseException {
+        Parser parser = new Parser(Dialects.ODATA);
+        LruCache<Parser.CacheKey, Operand> cache = new LruCache<>(16);
+        parser.setExpressionCache(cache);
+
+        Operand first = parser.parseExpression("a eq 1 and b gt 2");
+        Operand second = parser.parseExpression("a eq 1 and b gt 2");
+        Operand other = parser.parseExpression("a eq 2");
+
+        assertThat(second, sameInstance(first));
+        assertThat(other, not(sameInstance(first)));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void parseExpression_should_separate_dialects_in_shared_cache() throws ParseException {
+        LruCache<Parser.CacheKey, Operand> cache = new LruCache<>(16);
+        Parser odataParser = new Parser(Dialects.ODATA);
+        odataParser.setExpressionCache(cache);
+        Parser sqlParser = new Parser(Dialects.SQL);
+        sqlParser.setExpressionCache(cache);
+
+        Operand odataOperand = odataParser.parseExpression("a");
+        Operand sqlOperand = sqlParser.parseExpression("a");
+
+        assertThat(sqlOperand, not(sameInstance(odataOperand)));
+        assertThat(cache.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void parseExpression_should_not_cache_failures() {
+        Parser parser = new Parser(Dialects.ODATA);
+        LruCache<Parser.CacheKey, Operand> cache = new LruCache<>(16);
+        parser.setExpressionCache(cache);
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                parser.parseExpression("a eq ) 1");
+            } catch (Exception exc) {
+                // expected
+            }
+        }
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getMissCount(), is(2L));
+    }
+
+    @Test(expected = ParseException.class)
+    public void parseExpression_should_throw_parse_exception_on_missing_operand() throws ParseException {
+        Parser parser = new Parser(Dialects.ODATA);
+        parser.parseExpression("not not a gt b");
+    }
+
+    @Test(expected = ParseException.class)
+    public void parseExpression_should_throw_parse_exception_on_empty_expression() throws ParseException {
+        Parser parser = new Parser(Dialects.ODATA);
+        parser.parseExpression("");
+    }
+
+    @Test(expected = ParseException.class)
+    public void parseExpression_should_throw_parse_exception_on_brackets_only() throws ParseException {
+        Parser parser = new Parser(Dialects.ODATA);
+        parser.parseExpression("( )");
+    }
+
 }
@@ -0,0 +1,154 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import net.seesharpsoft.spring.data.jpa.expression.Parser.Primitive;
+import org.junit.Test;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class PrimitiveUT {
+
+    /**
+     * The regular expressions the literal classification is equivalent to.
+     */
+    private static final Pattern[] REFERENCE_PATTERNS = {
+            Pattern.compile("(?i)^null$"),
+            Pattern.compile("(?i)^true|false$"),
+            Pattern.compile("(?i)^[-+]?[0-9]+L$"),
+            Pattern.compile("(?i)^[-+]?[0-9]+$"),
+            Pattern.compile("(?i)^[0-9A-Fa-f]{8}[-][0-9A-Fa-f]{4}[-][0-9A-Fa-f]{4}[-][0-9A-Fa-f]{4}[-][0-9A-Fa-f]{12}$"),
+            Pattern.compile("(?i)^'.+?'$"),
+            Pattern.compile("(?i)^[-+]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?$"),
+            Pattern.compile("(?i)^[0-9]{4}[-][0-9]{2}[-][0-9]{2}$"),
+            Pattern.compile("(?i)^(datetime')?[0-9]{4}[-][0-9]{2}[-][0-9]{2}[T ][0-9]{2}[:][0-9]{2}[:][0-9]{2,4}(Z|[+-][0-9]{4})?'?$")
+    };
+
+    private static final String[] SEEDS = {
+            "null", "NuLl", "true", "FALSE", "0", "-42", "+7", "0042", "2147483648", "-2147483649", "12L", "-9l",
+            "9223372036854775808L", "1.5", "-.5", "+3.", "1e10", "2.5E-3", "1e", ".e1", "1.2.3",
+            "01234567-89ab-CDEF-0123-456789abcdef", "fedcba98-7654-3210-fedc-ba9876543210", "dddddddd-dddd-dddd-dddd-dddddddddddd",
+            "'a'", "''", "'''", "'abc def'", "'a\nb'",
+            "2019-01-02", "2019-1-02", "2019-01-02T10:11:12", "2019-01-02 10:11:1234", "2019-01-02t10:11:12Z",
+            "2019-01-02T10:11:12+0100", "2019-01-02T10:11:12-0100'", "datetime'2019-01-02T10:11:12'",
+            "DATETIME'2019-01-02T10:11:123z'", "datetime'2019-01-02T10:11:12", "abc", "a/b", "fa1se"
+    };
+
+    private static final String ALPHABET = "0123456789+-.eElLTtZz:' abcdefABCDEFnulrsimx\n\r\u0085\u2028\u017F\u0131\u212A\u0660";
+
+    private static Primitive parseReference(String input) {
+        for (int i = 0; i < REFERENCE_PATTERNS.length; ++i) {
+            if (REFERENCE_PATTERNS[i].matcher(input).matches()) {
+                return Primitive.values()[i];
+            }
+        }
+        return null;
+    }
+
+    private static Object convertReference(Primitive primitive, ConversionService conversionService, String input) {
+        String preparedInput = primitive.converter == null ? input : primitive.converter.convert(input);
+        if (preparedInput == null) {
+            return null;
+        }
+        return conversionService == null ? preparedInput : conversionService.convert(preparedInput, primitive.javaType);
+    }
+
+    private static String describe(Primitive primitive, ConversionService conversionService, String input, boolean reference) {
+        try {
+            Object value = reference ? convertReference(primitive, conversionService, input) : primitive.convert(conversionService, input);
+            return value == null ? "null" : value.getClass().getName() + ":" + value;
+        } catch (RuntimeException exc) {
+            return exc.getClass().getName() + ":" + exc.getMessage();
+        }
+    }
+
+    private static String mutate(Random random, String seed) {
+        StringBuilder builder = new StringBuilder(seed);
+        int mutations = random.nextInt(4);
+        for (int i = 0; i < mutations; ++i) {
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            int position = builder.length() == 0 ? 0 : random.nextInt(builder.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.insert(position, c);
+                    break;
+                case 1:
+                    if (builder.length() > 0) {
+                        builder.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    if (builder.length() > 0) {
+                        builder.setCharAt(position, c);
+                    }
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String randomInput(Random random) {
+        if (random.nextBoolean()) {
+            return mutate(random, SEEDS[random.nextInt(SEEDS.length)]);
+        }
+        int length = random.nextInt(12);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void parse_should_classify_seeds() {
+        assertThat(Primitive.parse("null"), is(Primitive.NULL));
+        assertThat(Primitive.parse("False"), is(Primitive.BOOLEAN));
+        assertThat(Primitive.parse("-12L"), is(Primitive.LONG));
+        assertThat(Primitive.parse("+12"), is(Primitive.INTEGER));
+        assertThat(Primitive.parse("fedcba98-7654-3210-fedc-ba9876543210"), is(Primitive.GUID));
+        assertThat(Primitive.parse("'text'"), is(Primitive.STRING));
+        assertThat(Primitive.parse(".5e-3"), is(Primitive.DOUBLE));
+        assertThat(Primitive.parse("2019-01-02"), is(Primitive.DATE));
+        assertThat(Primitive.parse("datetime'2019-01-02T10:11:12Z'"), is(Primitive.DATETIME));
+        assertThat(Primitive.parse("fal\u017Fe"), nullValue());
+        assertThat(Primitive.parse("a/b"), nullValue());
+    }
+
+    @Test
+    public void convert_should_convert_literals_directly() {
+        ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+        assertThat(Primitive.BOOLEAN.convert(conversionService, "TRUE"), is(Boolean.TRUE));
+        assertThat(Primitive.LONG.convert(conversionService, "-12L"), is(-12L));
+        assertThat(Primitive.INTEGER.convert(conversionService, "+0042"), is(42));
+        assertThat(Primitive.DOUBLE.convert(conversionService, ".5e-3"), is(0.0005));
+        assertThat(Primitive.STRING.convert(conversionService, "'text'"), is("text"));
+        assertThat(Primitive.GUID.convert(conversionService, "fedcba98-7654-3210-fedc-ba9876543210"), is(UUID.fromString("fedcba98-7654-3210-fedc-ba9876543210")));
+        assertThat(Primitive.INTEGER.convert(null, "+0042"), is("+0042"));
+    }
+
+    @Test
+    public void parse_and_convert_should_match_reference_implementation() {
+        Random random = new Random(20190417);
+        ConversionService[] conversionServices = {DefaultConversionService.getSharedInstance(), null};
+        for (int i = 0; i < 200000; ++i) {
+            String input = randomInput(random);
+            Primitive expected = parseReference(input);
+            Primitive actual = Primitive.parse(input);
+            assertThat(String.format("classification of '%s'", input), actual, is(expected));
+
+            if (actual != null) {
+                for (ConversionService conversionService : conversionServices) {
+                    String expectedValue = describe(expected, conversionService, input, true);
+                    String actualValue = describe(actual, conversionService, input, false);
+                    assertThat(String.format("conversion of '%s'", input), actualValue, is(expectedValue));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.seesharpsoft.spring.data.jpa.expression;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Root;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResolutionContextUT {
+
+    private CriteriaQuery query;
+
+    private Root root;
+
+    private Expression fullName;
+
+    @Before
+    public void before() {
+        query = mock(CriteriaQuery.class);
+        root = mock(Root.class);
+        fullName = mock(Expression.class);
+        when(root.getJoins()).thenReturn(Collections.emptySet());
+        when(fullName.getAlias()).thenReturn("fullName");
+        when(query.getRoots()).thenReturn(Collections.singleton(root));
+        when(query.getSelection()).thenReturn(fullName);
+    }
+
+    @Test
+    public void should_contain_roots_and_selections() {
+        assertThat(ResolutionContext.of(query), contains(root, fullName));
+    }
+
+    @Test
+    public void findExpression_should_ignore_case() {
+        ResolutionContext context = ResolutionContext.of(query);
+
+        assertThat(context.findExpression("FULLNAME"), is(fullName));
+        assertThat(Operands.findExpression("fullname", context), is(fullName));
+        assertThat(context.findExpression("unknown"), is(nullValue()));
+    }
+
+    @Test
+    public void should_share_context_in_scope_only() {
+        try (ResolutionContext.Scope scope = ResolutionContext.open()) {
+            assertThat(Operands.getContexts(query), is(sameInstance(Operands.getContexts(query))));
+        }
+        assertThat(Operands.getContexts(query), is(not(sameInstance(Operands.getContexts(query)))));
+    }
+
+    @Test
+    public void should_rebuild_context_if_selection_changed() {
+        try (ResolutionContext.Scope scope = ResolutionContext.open()) {
+            ResolutionContext context = ResolutionContext.of(query);
+            Expression other = mock(Expression.class);
+            when(other.getAlias()).thenReturn("other");
+            when(query.getSelection()).thenReturn(other);
+
+            assertThat(ResolutionContext.of(query), is(not(sameInstance(context))));
+            assertThat(ResolutionContext.of(query).findExpression("other"), is(other));
+        }
+    }
+
+    @Test
+    public void getJavaType_should_resolve_operand_once() {
+        Operand operand = mock(Operand.class);
+        when(operand.getJavaType(any(), any())).thenReturn(String.class);
+        ResolutionContext context = ResolutionContext.of(query);
+
+        assertThat((Object) Operands.getJavaType(operand, root, context), is((Object) String.class));
+        assertThat((Object) Operators.Base.decideTargetJavaClass(root, context, operand, null), is((Object) String.class));
+        verify(operand, times(1)).getJavaType(root, context);
+    }
+}
@@ -1,13 +1,23 @@
 package net.seesharpsoft.spring.test;
 
 import net.seesharpsoft.spring.data.jpa.JpaVendorUtilProxy;
+import org.hibernate.query.Query;
 import org.hibernate.query.criteria.internal.expression.function.FunctionExpression;
 
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.Expression;
+import java.util.stream.Stream;
 
 public class JpaVendorUtilProxyDummy implements JpaVendorUtilProxy {
     @Override
     public boolean isAggregateFunction(Expression expression) {
         return expression instanceof FunctionExpression && ((FunctionExpression) expression).isAggregation();
     }
+
+    @Override
+    public <T> Stream<T> stream(TypedQuery<T> query, int fetchSize) {
+        Query<T> hibernateQuery = query.unwrap(Query.class);
+        hibernateQuery.setFetchSize(fetchSize);
+        return hibernateQuery.stream();
+    }
 }
@@ -0,0 +1,20 @@
+package net.seesharpsoft.spring.test.selectable;
+
+import lombok.AllArgsConstructor;
+import net.seesharpsoft.spring.data.jpa.selectable.ResultCache;
+import net.seesharpsoft.spring.data.jpa.selectable.Select;
+import net.seesharpsoft.spring.data.jpa.selectable.Selectable;
+import net.seesharpsoft.spring.test.model.User;
+
+@Selectable(
+        from = User.class,
+        resultCache = @ResultCache(size = 10, timeToLive = "PT1M")
+)
+@AllArgsConstructor
+public class CachedUserInfo {
+
+    private int id;
+
+    @Select("country/name")
+    private String country;
+}
@@ -0,0 +1,19 @@
+package net.seesharpsoft.spring.test.selectable;
+
+import lombok.AllArgsConstructor;
+import net.seesharpsoft.spring.data.jpa.selectable.Select;
+import net.seesharpsoft.spring.data.jpa.selectable.Selectable;
+import net.seesharpsoft.spring.test.model.User;
+
+@Selectable(
+        from = User.class
+)
+@AllArgsConstructor
+public class UserCountPerCountryInfo {
+
+    @Select("country/name")
+    private String country;
+
+    @Select("COUNT(id)")
+    private long userCount;
+}
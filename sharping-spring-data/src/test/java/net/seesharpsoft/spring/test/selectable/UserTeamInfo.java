@@ -0,0 +1,23 @@
+package net.seesharpsoft.spring.test.selectable;
+
+import lombok.AllArgsConstructor;
+import net.seesharpsoft.spring.data.jpa.selectable.Join;
+import net.seesharpsoft.spring.data.jpa.selectable.Joins;
+import net.seesharpsoft.spring.data.jpa.selectable.Select;
+import net.seesharpsoft.spring.data.jpa.selectable.Selectable;
+import net.seesharpsoft.spring.test.model.User;
+
+@Selectable(
+        from = User.class,
+        joins = @Joins(
+                @Join(value = "teams", alias = "team")
+        )
+)
+@AllArgsConstructor
+public class UserTeamInfo {
+
+    private int id;
+
+    @Select("team.name")
+    private String teamName;
+}
@@ -1,13 +1,36 @@
 package net.seesharpsoft.spring.data.jpa.hibernate;
 
 import net.seesharpsoft.spring.data.jpa.JpaVendorUtilProxy;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
 import org.hibernate.query.criteria.internal.expression.function.FunctionExpression;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.Expression;
+import java.util.stream.Stream;
 
 public class JpaVendorUtilProxyHibernate implements JpaVendorUtilProxy {
     @Override
     public boolean isAggregateFunction(Expression expression) {
         return expression instanceof FunctionExpression && ((FunctionExpression) expression).isAggregation();
     }
+
+    @Override
+    public <T> Stream<T> stream(TypedQuery<T> query, int fetchSize) {
+        Query<T> hibernateQuery = query.unwrap(Query.class);
+        hibernateQuery.setFetchSize(fetchSize);
+        return hibernateQuery.stream();
+    }
+
+    @Override
+    public EntityManager createReadOnlyEntityManager(EntityManagerFactory entityManagerFactory) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        Session session = entityManager.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        return entityManager;
+    }
 }
@@ -14,11 +14,20 @@ public class ConfigurationProperties {
     
     public static final String EXPRESSION_ROOT = PROPERTIES_ROOT + ".expression";
     public static final String EXPRESSION_DIALECT = EXPRESSION_ROOT + ".dialect";
+    public static final String EXPRESSION_CACHE_SIZE = EXPRESSION_ROOT + ".cacheSize";
 
     public static final String SELECTABLE_ROOT = PROPERTIES_ROOT + ".selectable";
     public static final String SELECTABLE_ENABLED = SELECTABLE_ROOT + ".enabled";
     public static final String SELECTABLE_IMPL_CLASS = SELECTABLE_ROOT + ".repositoryBaseClass";
     public static final String SELECTABLE_BASE_PACKAGES = SELECTABLE_ROOT + ".packages";
+    public static final String SELECTABLE_FETCH_SIZE = SELECTABLE_ROOT + ".fetchSize";
+    public static final String SELECTABLE_CLEAR_INTERVAL = SELECTABLE_ROOT + ".clearInterval";
+    public static final String SELECTABLE_REFRESH_INTERVAL = SELECTABLE_ROOT + ".refreshInterval";
+    public static final String SELECTABLE_QUERY_CACHE_SIZE = SELECTABLE_ROOT + ".queryCacheSize";
+    public static final String SELECTABLE_PARAMETER_BINDING = SELECTABLE_ROOT + ".parameterBinding";
+    public static final String SELECTABLE_ID_CHUNK_SIZE = SELECTABLE_ROOT + ".idChunkSize";
+    public static final String SELECTABLE_EXECUTOR = SELECTABLE_ROOT + ".executor";
+    public static final String SELECTABLE_PARALLEL_COUNT = SELECTABLE_ROOT + ".parallelCount";
 
     private ExpressionDialect expressionDialect = ExpressionDialect.None;
     private boolean specificationHandlerEnabled = false;
@@ -3,9 +3,14 @@ package net.seesharpsoft.spring.suite.boot;
 import net.seesharpsoft.spring.data.domain.SelectableRepository;
 import net.seesharpsoft.spring.data.domain.impl.SelectableRepositoryImpl;
 import net.seesharpsoft.spring.data.jpa.selectable.Selectable;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.MethodInvokingBean;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.EnvironmentAware;
@@ -18,6 +23,10 @@ import org.springframework.core.type.StandardAnnotationMetadata;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.util.StringUtils;
 
+import java.beans.PropertyDescriptor;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.apache.naming.ResourceRef.SINGLETON;
@@ -27,6 +36,40 @@ public class SelectableInterfaceScanRegistrar implements ImportBeanDefinitionReg
 
     public static final String SELECTABLE_FACTORY_BEAN_NAME = "selectableRepositoryFactory";
     public static final String SELECTABLE_FACTORY_CREATE_METHOD_NAME = "createRepository";
+    public static final String SELECTABLE_FACTORY_REGISTER_METHOD_NAME = "registerSelectables";
+
+    private static void addPropertyValue(MutablePropertyValues propertyValues, Class beanClass, String name, Object value) {
+        PropertyDescriptor propertyDescriptor = BeanUtils.getPropertyDescriptor(beanClass, name);
+        if (propertyDescriptor != null && propertyDescriptor.getWriteMethod() != null) {
+            propertyValues.add(name, value);
+        }
+    }
+
+    /**
+     * Values of the repository properties - all of them need to be set due to the dependency check.
+     */
+    protected static MutablePropertyValues getPropertyValues(Environment environment, Class<? extends SelectableRepository> repositoryBaseClass) {
+        MutablePropertyValues propertyValues = new MutablePropertyValues();
+        int fetchSize = environment == null ? SelectableRepositoryImpl.DEFAULT_FETCH_SIZE :
+                environment.getProperty(ConfigurationProperties.SELECTABLE_FETCH_SIZE, Integer.class, SelectableRepositoryImpl.DEFAULT_FETCH_SIZE);
+        String refreshInterval = environment == null ? null : environment.getProperty(ConfigurationProperties.SELECTABLE_REFRESH_INTERVAL);
+        // name of an executor bean - should be bounded, as each task holds its own connection
+        String executor = environment == null ? null : environment.getProperty(ConfigurationProperties.SELECTABLE_EXECUTOR);
+        addPropertyValue(propertyValues, repositoryBaseClass, "fetchSize", fetchSize);
+        addPropertyValue(propertyValues, repositoryBaseClass, "clearInterval",
+                environment == null ? 0 : environment.getProperty(ConfigurationProperties.SELECTABLE_CLEAR_INTERVAL, Integer.class, 0));
+        addPropertyValue(propertyValues, repositoryBaseClass, "queryCacheSize", environment == null ? SelectableRepositoryImpl.DEFAULT_QUERY_CACHE_SIZE :
+                environment.getProperty(ConfigurationProperties.SELECTABLE_QUERY_CACHE_SIZE, Integer.class, SelectableRepositoryImpl.DEFAULT_QUERY_CACHE_SIZE));
+        addPropertyValue(propertyValues, repositoryBaseClass, "parameterBinding",
+                environment == null || environment.getProperty(ConfigurationProperties.SELECTABLE_PARAMETER_BINDING, Boolean.class, true));
+        addPropertyValue(propertyValues, repositoryBaseClass, "idChunkSize", environment == null ? SelectableRepositoryImpl.DEFAULT_ID_CHUNK_SIZE :
+                environment.getProperty(ConfigurationProperties.SELECTABLE_ID_CHUNK_SIZE, Integer.class, SelectableRepositoryImpl.DEFAULT_ID_CHUNK_SIZE));
+        addPropertyValue(propertyValues, repositoryBaseClass, "executor", StringUtils.hasText(executor) ? new RuntimeBeanReference(executor) : null);
+        addPropertyValue(propertyValues, repositoryBaseClass, "parallelCount",
+                environment == null || environment.getProperty(ConfigurationProperties.SELECTABLE_PARALLEL_COUNT, Boolean.class, true));
+        addPropertyValue(propertyValues, repositoryBaseClass, "refreshInterval", StringUtils.hasText(refreshInterval) ? Duration.parse(refreshInterval) : null);
+        return propertyValues;
+    }
 
     public static final void registerSelectableRepositoryDefinitions(BeanDefinitionRegistry beanDefinitionRegistry,
                                                                      Environment environment,
@@ -52,31 +95,46 @@ public class SelectableInterfaceScanRegistrar implements ImportBeanDefinitionReg
         provider.addIncludeFilter(new AnnotationTypeFilter(Selectable.class));
 
         // scan all packages
+        List<Class<?>> selectableClasses = new ArrayList<>();
         for (String basePackage : basePackages) {
             for (BeanDefinition beanDefinition : provider.findCandidateComponents(basePackage)) {
                 AnnotatedBeanDefinition annotatedBeanDefinition = (AnnotatedBeanDefinition) beanDefinition;
-                Class selectableClass = null;
                 try {
-                    selectableClass = Class.forName(annotatedBeanDefinition.getBeanClassName());
+                    selectableClasses.add(Class.forName(annotatedBeanDefinition.getBeanClassName()));
                 } catch (ClassNotFoundException exc) {
                     throw new RuntimeException(exc);
                 }
-
-                RootBeanDefinition finalBeanDefinition = new RootBeanDefinition();
-                finalBeanDefinition.setDependencyCheck(DEPENDENCY_CHECK_ALL);
-                finalBeanDefinition.setScope(SINGLETON);
-                finalBeanDefinition.setTargetType(ResolvableType.forClassWithGenerics(SelectableRepository.class, selectableClass));
-                finalBeanDefinition.setAutowireCandidate(true);
-                finalBeanDefinition.setFactoryBeanName(SELECTABLE_FACTORY_BEAN_NAME);
-                finalBeanDefinition.setFactoryMethodName(SELECTABLE_FACTORY_CREATE_METHOD_NAME);
-                ConstructorArgumentValues constructorArgumentValues = new ConstructorArgumentValues();
-                constructorArgumentValues.addGenericArgumentValue(repositoryBaseClass);
-                constructorArgumentValues.addGenericArgumentValue(selectableClass);
-                finalBeanDefinition.setConstructorArgumentValues(constructorArgumentValues);
-
-                beanDefinitionRegistry.registerBeanDefinition(String.format("%sRepository", StringUtils.uncapitalize(selectableClass.getSimpleName())), finalBeanDefinition);
             }
         }
+        if (selectableClasses.isEmpty()) {
+            return;
+        }
+
+        // the selectables are registered at the factory - in parallel - before any of their repositories is created
+        RootBeanDefinition registrationBeanDefinition = new RootBeanDefinition(MethodInvokingBean.class);
+        registrationBeanDefinition.getPropertyValues()
+                .add("targetObject", new RuntimeBeanReference(SELECTABLE_FACTORY_BEAN_NAME))
+                .add("targetMethod", SELECTABLE_FACTORY_REGISTER_METHOD_NAME)
+                .add("arguments", new Object[] {selectableClasses});
+        String registrationBeanName = BeanDefinitionReaderUtils.registerWithGeneratedName(registrationBeanDefinition, beanDefinitionRegistry);
+
+        for (Class selectableClass : selectableClasses) {
+            RootBeanDefinition finalBeanDefinition = new RootBeanDefinition();
+            finalBeanDefinition.setDependencyCheck(DEPENDENCY_CHECK_ALL);
+            finalBeanDefinition.setScope(SINGLETON);
+            finalBeanDefinition.setTargetType(ResolvableType.forClassWithGenerics(SelectableRepository.class, selectableClass));
+            finalBeanDefinition.setAutowireCandidate(true);
+            finalBeanDefinition.setFactoryBeanName(SELECTABLE_FACTORY_BEAN_NAME);
+            finalBeanDefinition.setFactoryMethodName(SELECTABLE_FACTORY_CREATE_METHOD_NAME);
+            finalBeanDefinition.setDependsOn(registrationBeanName);
+            ConstructorArgumentValues constructorArgumentValues = new ConstructorArgumentValues();
+            constructorArgumentValues.addGenericArgumentValue(repositoryBaseClass);
+            constructorArgumentValues.addGenericArgumentValue(selectableClass);
+            finalBeanDefinition.setConstructorArgumentValues(constructorArgumentValues);
+            finalBeanDefinition.setPropertyValues(getPropertyValues(environment, repositoryBaseClass));
+
+            beanDefinitionRegistry.registerBeanDefinition(String.format("%sRepository", StringUtils.uncapitalize(selectableClass.getSimpleName())), finalBeanDefinition);
+        }
     }
 
     private Environment environment;
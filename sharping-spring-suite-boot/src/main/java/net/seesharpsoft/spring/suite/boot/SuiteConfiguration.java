@@ -1,15 +1,19 @@
 package net.seesharpsoft.spring.suite.boot;
 
 import net.seesharpsoft.UnhandledSwitchCaseException;
+import net.seesharpsoft.commons.collection.LruCache;
 import net.seesharpsoft.spring.data.domain.SelectableRepositoryFactory;
 import net.seesharpsoft.spring.data.domain.SqlParser;
 import net.seesharpsoft.spring.data.domain.impl.SelectableRepositoryFactoryImpl;
 import net.seesharpsoft.spring.data.domain.impl.SqlParserImpl;
 import net.seesharpsoft.spring.data.jpa.SpecificationConverter;
+import net.seesharpsoft.spring.data.jpa.expression.Dialect;
 import net.seesharpsoft.spring.data.jpa.expression.Dialects;
+import net.seesharpsoft.spring.data.jpa.expression.Operand;
 import net.seesharpsoft.spring.data.jpa.expression.Parser;
 import net.seesharpsoft.spring.data.web.OffsetLimitPageHandlerMethodArgumentResolver;
 import net.seesharpsoft.spring.data.web.SpecificationHandlerMethodArgumentResolver;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -36,17 +40,30 @@ public class SuiteConfiguration extends WebMvcConfigurationSupport {
     @Autowired
     ConfigurationProperties properties;
 
+    protected Parser createParser(Dialect dialect, ConversionService conversionService, LruCache<Parser.CacheKey, Operand> expressionCache) {
+        Parser parser = new Parser(dialect, conversionService);
+        parser.setExpressionCache(expressionCache);
+        return parser;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = ConfigurationProperties.EXPRESSION_CACHE_SIZE)
+    LruCache<Parser.CacheKey, Operand> expressionCache(Environment environment) {
+        return new LruCache<>(environment.getProperty(ConfigurationProperties.EXPRESSION_CACHE_SIZE, Integer.class));
+    }
+
     @Bean
     @ConditionalOnMissingBean
     @Conditional(SpecificationConverterEnabledCondition.class)
-    Converter<String, Specification> specificationConverter(@Lazy ConversionService conversionService) {
+    Converter<String, Specification> specificationConverter(@Lazy ConversionService conversionService, ObjectProvider<LruCache<Parser.CacheKey, Operand>> expressionCache) {
         switch (properties.getExpressionDialect()) {
             case Sql:
-                return new SpecificationConverter(Dialects.SQL, conversionService);
+                return new SpecificationConverter(createParser(Dialects.SQL, conversionService, expressionCache.getIfAvailable()));
             case OData:
-                return new SpecificationConverter(Dialects.ODATA, conversionService);
+                return new SpecificationConverter(createParser(Dialects.ODATA, conversionService, expressionCache.getIfAvailable()));
             case Default:
-                return new SpecificationConverter(Dialects.JAVA, conversionService);
+                return new SpecificationConverter(createParser(Dialects.JAVA, conversionService, expressionCache.getIfAvailable()));
             case None:
                 throw new UnsupportedOperationException();
             default:
@@ -78,8 +95,8 @@ public class SuiteConfiguration extends WebMvcConfigurationSupport {
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnProperty(name = ConfigurationProperties.SELECTABLE_ENABLED)
-    SqlParser sqlParser(@Lazy ConversionService conversionService) {
-        return new SqlParserImpl(new Parser(Dialects.SQL, conversionService));
+    SqlParser sqlParser(@Lazy ConversionService conversionService, ObjectProvider<LruCache<Parser.CacheKey, Operand>> expressionCache) {
+        return new SqlParserImpl(createParser(Dialects.SQL, conversionService, expressionCache.getIfAvailable()));
     }
 
     @Bean
@@ -1,7 +1,13 @@
 package net.seesharpsoft.spring.suite.boot;
 
+import net.seesharpsoft.commons.collection.LruCache;
+import net.seesharpsoft.spring.data.domain.SelectableInfoRegistry;
 import net.seesharpsoft.spring.data.domain.SelectableRepository;
 import net.seesharpsoft.spring.data.domain.SelectableRepositoryFactory;
+import net.seesharpsoft.spring.data.domain.SqlParser;
+import net.seesharpsoft.spring.data.domain.impl.SelectableRepositoryFactoryImpl;
+import net.seesharpsoft.spring.data.jpa.expression.Operand;
+import net.seesharpsoft.spring.data.jpa.expression.Parser;
 import net.seesharpsoft.spring.suite.test.TestApplication;
 import net.seesharpsoft.spring.suite.test.selectable.SelectableUser;
 import net.seesharpsoft.spring.suite.test.selectable.SimpleUser;
@@ -10,6 +16,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
 import org.springframework.test.context.junit4.SpringRunner;
 
 @RunWith(SpringRunner.class)
@@ -25,6 +32,15 @@ public class SelectableInterfaceIT {
     @Autowired(required = false)
     private SelectableRepository<SimpleUser> mySimpleUserRepository;
 
+    @Autowired(required = false)
+    private SqlParser sqlParser;
+
+    @Autowired(required = false)
+    private LruCache<Parser.CacheKey, Operand> expressionCache;
+
+    @Autowired
+    private Environment environment;
+
     @Test
     public void setSelectableRepositoryFactory_should_be_autowired() {
         Assertions.assertThat(selectableRepositoryFactory).isNotNull();
@@ -35,4 +51,29 @@ public class SelectableInterfaceIT {
         Assertions.assertThat(selectableUserRepository).isNotNull();
         Assertions.assertThat(mySimpleUserRepository).isNotNull();
     }
+
+    @Test
+    public void selectables_should_be_registered_at_factory() {
+        Assertions.assertThat(selectableRepositoryFactory).isInstanceOf(SelectableRepositoryFactoryImpl.class);
+        SelectableInfoRegistry registry = ((SelectableRepositoryFactoryImpl) selectableRepositoryFactory).getSelectableInfoRegistry();
+
+        Assertions.assertThat(registry.isRegistered(SelectableUser.class)).isTrue();
+        Assertions.assertThat(registry.isRegistered(SimpleUser.class)).isTrue();
+    }
+
+    @Test
+    public void expressionCache_should_be_used_by_sqlParser() {
+        Assertions.assertThat(environment.getProperty(ConfigurationProperties.EXPRESSION_CACHE_SIZE)).isEqualTo("256");
+        Assertions.assertThat(expressionCache).isNotNull();
+        Assertions.assertThat(expressionCache.getMaximumSize()).isEqualTo(256);
+
+        long misses = expressionCache.getMissCount();
+        long hits = expressionCache.getHitCount();
+        Operand first = sqlParser.parseExpression("name = 'cache' AND id > 5");
+        Operand second = sqlParser.parseExpression("name = 'cache' AND id > 5");
+
+        Assertions.assertThat(second).isSameAs(first);
+        Assertions.assertThat(expressionCache.getMissCount()).isEqualTo(misses + 1);
+        Assertions.assertThat(expressionCache.getHitCount()).isEqualTo(hits + 1);
+    }
 }
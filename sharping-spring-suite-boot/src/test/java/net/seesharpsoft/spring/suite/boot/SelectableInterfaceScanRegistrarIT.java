@@ -0,0 +1,56 @@
+package net.seesharpsoft.spring.suite.boot;
+
+import net.seesharpsoft.spring.data.jpa.selectable.Selectable;
+import net.seesharpsoft.spring.suite.test.selectable.SelectableUser;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+public class SelectableInterfaceScanRegistrarIT {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ClassLoader contextClassLoader;
+
+    @Before
+    public void beforeEach() throws IOException {
+        // a candidate component index that lists SelectableUser only - like one generated for another module
+        File metaInf = temporaryFolder.newFolder("META-INF");
+        Files.write(new File(metaInf, "spring.components").toPath(),
+                Collections.singletonList(SelectableUser.class.getName() + "=" + Selectable.class.getName()), StandardCharsets.ISO_8859_1);
+
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[] {temporaryFolder.getRoot().toURI().toURL()}, contextClassLoader));
+    }
+
+    @After
+    public void afterEach() {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+
+    @Test
+    public void registerSelectableRepositoryDefinitions_should_find_selectables_missing_in_index() {
+        Assertions.assertThat(Thread.currentThread().getContextClassLoader().getResource("META-INF/spring.components")).isNotNull();
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        SelectableInterfaceScanRegistrar.registerSelectableRepositoryDefinitions(registry, new MockEnvironment(), null,
+                new String[] {SelectableUser.class.getPackage().getName()});
+
+        Assertions.assertThat(registry.containsBeanDefinition("selectableUserRepository")).isTrue();
+        Assertions.assertThat(registry.containsBeanDefinition("simpleUserRepository")).isTrue();
+    }
+}
@@ -1,15 +1,19 @@
 package net.seesharpsoft.spring.data.web;
 
+import net.seesharpsoft.spring.data.domain.KeysetRequest;
 import net.seesharpsoft.spring.data.domain.OffsetLimitRequest;
 import org.springframework.core.MethodParameter;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.SortArgumentResolver;
 import org.springframework.data.web.SortHandlerMethodArgumentResolver;
+import org.springframework.http.HttpStatus;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
 
 public class OffsetLimitPageHandlerMethodArgumentResolver extends org.springframework.data.web.PageableHandlerMethodArgumentResolver {
 
@@ -17,9 +21,11 @@ public class OffsetLimitPageHandlerMethodArgumentResolver extends org.springfram
     
     private static final String DEFAULT_OFFSET_PARAMETER = "offset";
     private static final String DEFAULT_LIMIT_PARAMETER = "limit";
+    private static final String DEFAULT_CURSOR_PARAMETER = "cursor";
 
     private String offsetParameterName = DEFAULT_OFFSET_PARAMETER;
     private String limitParameterName = DEFAULT_LIMIT_PARAMETER;
+    private String cursorParameterName = DEFAULT_CURSOR_PARAMETER;
     
     private final SortArgumentResolver sortArgumentResolver;
 
@@ -88,12 +94,47 @@ public class OffsetLimitPageHandlerMethodArgumentResolver extends org.springfram
         return this.limitParameterName;
     }
 
+    /**
+     * Configures the parameter name to be used to find the continuation token of a keyset request. Defaults to {@code cursor}.
+     *
+     * @param cursorParameterName the parameter name to be used, must not be {@literal null} or empty.
+     */
+    public void setCursorParameterName(String cursorParameterName) {
+
+        Assert.hasText(cursorParameterName, "Cursor parameter name must not be null or empty!");
+        this.cursorParameterName = cursorParameterName;
+    }
+
+    /**
+     * Retrieves the parameter name to be used to find the continuation token of a keyset request. Defaults to {@code cursor}.
+     *
+     * @return the parameter name to be used, never {@literal null} or empty.
+     */
+    public String getCursorParameterName() {
+        return this.cursorParameterName;
+    }
+
     @Override
     public Pageable resolveArgument(MethodParameter methodParameter, ModelAndViewContainer mavContainer,
                                     NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
 
         String offsetString = webRequest.getParameter(getParameterNameToUse(offsetParameterName, methodParameter));
         String limitString = webRequest.getParameter(getParameterNameToUse(limitParameterName, methodParameter));
+        String cursorString = webRequest.getParameter(getParameterNameToUse(cursorParameterName, methodParameter));
+
+        if (cursorString != null) {
+            // an empty cursor requests the first page
+            int limit = StringUtils.hasText(limitString) ?
+                    tryParseInteger(limitString, getMaxPageSize()) :
+                    super.resolveArgument(methodParameter, mavContainer, webRequest, binderFactory).getPageSize();
+            Sort sort = sortArgumentResolver.resolveArgument(methodParameter, mavContainer, webRequest, binderFactory);
+            try {
+                return KeysetRequest.of(cursorString, limit, sort);
+            } catch (IllegalArgumentException exc) {
+                // the cursor is client input - an invalid one or one of another sort is a bad request
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, exc.getMessage(), exc);
+            }
+        }
 
         boolean offsetAndLimitGiven = StringUtils.hasText(offsetString) && StringUtils.hasText(limitString);
 
@@ -1,5 +1,6 @@
 package net.seesharpsoft.spring.data.web;
 
+import net.seesharpsoft.spring.data.domain.KeysetRequest;
 import net.seesharpsoft.spring.data.domain.OffsetLimitRequest;
 import net.seesharpsoft.spring.test.controller.SimpleControllerDummy;
 import org.junit.Test;
@@ -127,5 +128,36 @@ public class OffsetLimitPageHandlerMethodArgumentResolverUT {
                 .andExpect(status().isOk())
                 .andExpect(content().string(new OffsetLimitRequest(1, MAX_PAGE_SIZE).toString()));
     }
-    
+
+    @Test
+    public void handler_should_resolve_empty_cursor_parameter_as_first_KeysetRequest() throws Exception {
+        setup();
+        mockMvc.perform(get("/pageable?cursor=&limit=5&sort=test,desc"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(new KeysetRequest(5, Sort.by(Sort.Direction.DESC, "test")).toString()));
+    }
+
+    @Test
+    public void handler_should_resolve_cursor_parameter_as_KeysetRequest() throws Exception {
+        setup();
+        KeysetRequest request = new KeysetRequest(5, Sort.by(Sort.Direction.DESC, "test")).next("last");
+        mockMvc.perform(get("/pageable?cursor=" + request.getToken() + "&sort=test,desc&size=5"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(request.toString()));
+    }
+
+    @Test
+    public void handler_should_reject_invalid_cursor_parameter() throws Exception {
+        setup();
+        mockMvc.perform(get("/pageable?cursor=no-token&sort=test,desc&size=5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void handler_should_reject_cursor_parameter_of_other_sort() throws Exception {
+        setup();
+        KeysetRequest request = new KeysetRequest(5, Sort.by(Sort.Direction.DESC, "test")).next("last");
+        mockMvc.perform(get("/pageable?cursor=" + request.getToken() + "&sort=other,desc&size=5"))
+                .andExpect(status().isBadRequest());
+    }
 }